@@ -0,0 +1,130 @@
+package hudson.plugins.accurev.benchmark;
+
+/**
+ * Synthetic AccuRev command output, shaped like what a large depot returns, for the benchmarks.
+ */
+final class AccurevXmlFixtures {
+
+  private static final long EPOCH = 1500000000L;
+
+  private AccurevXmlFixtures() {}
+
+  /**
+   * Output of <code>accurev hist -fx</code>, which is also what a changelog file holds.
+   *
+   * @param transactions number of transactions
+   * @param versions number of versions in each transaction
+   * @return See above.
+   */
+  static String history(int transactions, int versions) {
+    final StringBuilder xml = header("hist");
+    for (int t = 1; t <= transactions; t++) {
+      xml.append("  <transaction id=\"")
+          .append(t)
+          .append("\" type=\"")
+          .append(t % 10 == 0 ? "keep" : "promote")
+          .append("\" time=\"")
+          .append(EPOCH + t)
+          .append("\" user=\"user")
+          .append(t % 50)
+          .append("\" streamName=\"dev\" streamNumber=\"2\">\n")
+          .append("    <comment>Change number ")
+          .append(t)
+          .append(" touching ")
+          .append(versions)
+          .append(" elements</comment>\n");
+      for (int v = 0; v < versions; v++) {
+        final int element = t * versions + v;
+        xml.append("    <version path=\"")
+            .append(path(element))
+            .append("\" eid=\"")
+            .append(element)
+            .append("\" virtual=\"2/")
+            .append(t)
+            .append("\" real=\"3/")
+            .append(t)
+            .append("\" virtualNamedVersion=\"dev/")
+            .append(t)
+            .append("\" realNamedVersion=\"dev_ws/")
+            .append(t)
+            .append("\" elem_type=\"text\" dir=\"no\"/>\n");
+      }
+      xml.append("  </transaction>\n");
+    }
+    return footer(xml);
+  }
+
+  /**
+   * Output of <code>accurev show -fx streams</code>: a depot stream and a tree of streams under it,
+   * each with ten children.
+   *
+   * @param streams number of streams
+   * @return See above.
+   */
+  static String streams(int streams) {
+    final StringBuilder xml = header("show streams");
+    for (int s = 1; s <= streams; s++) {
+      xml.append("  <stream name=\"stream")
+          .append(s)
+          .append("\" depotName=\"depot\" streamNumber=\"")
+          .append(s)
+          .append('"');
+      if (s > 1) {
+        final int basis = s / 10 + 1;
+        xml.append(" basis=\"stream")
+            .append(basis)
+            .append("\" basisStreamNumber=\"")
+            .append(basis)
+            .append('"');
+      }
+      xml.append(" isDynamic=\"true\" type=\"")
+          .append(s == 1 ? "normal" : s % 7 == 0 ? "workspace" : "normal")
+          .append("\" startTime=\"")
+          .append(EPOCH)
+          .append("\" time=\"")
+          .append(EPOCH + s)
+          .append("\"/>\n");
+    }
+    return footer(xml);
+  }
+
+  /**
+   * Output of <code>accurev update -fx -i</code>.
+   *
+   * @param elements number of elements updated
+   * @return See above.
+   */
+  static String update(int elements) {
+    final StringBuilder xml = header("update");
+    for (int e = 0; e < elements; e++) {
+      xml.append("  <element location=\"").append(path(e)).append("\" dir=\"no\"/>\n");
+    }
+    return footer(xml);
+  }
+
+  /**
+   * @param element element number
+   * @return a path spread over modules and packages, like a real source tree
+   */
+  static String path(int element) {
+    return "/./module"
+        + element % 20
+        + "/src/main/java/org/example/pkg"
+        + element % 100
+        + "/Element"
+        + element
+        + (element % 3 == 0 ? ".xml" : ".java");
+  }
+
+  private static StringBuilder header(String command) {
+    return new StringBuilder(1 << 20)
+        .append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n")
+        .append("<AcResponse Command=\"")
+        .append(command)
+        .append("\" TaskId=\"1\">\n");
+  }
+
+  private static String footer(StringBuilder xml) {
+    return xml.append("</AcResponse>\n").toString();
+  }
+}
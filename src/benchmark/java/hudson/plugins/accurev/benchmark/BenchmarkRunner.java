@@ -0,0 +1,35 @@
+package hudson.plugins.accurev.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import jenkins.benchmark.jmh.BenchmarkFinder;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of this package, with <code>mvn -P benchmark test</code>. Results are written
+ * to <code>jmh-report.json</code>.
+ */
+public final class BenchmarkRunner {
+
+  @Test
+  public void runJmhBenchmarks() throws Exception {
+    ChainedOptionsBuilder options =
+        new OptionsBuilder()
+            .mode(Mode.AverageTime)
+            .timeUnit(TimeUnit.MILLISECONDS)
+            .warmupIterations(3)
+            .measurementIterations(5)
+            .threads(1)
+            .forks(2)
+            .shouldFailOnError(true)
+            .shouldDoGC(true)
+            .resultFormat(ResultFormatType.JSON)
+            .result("jmh-report.json");
+    new BenchmarkFinder(getClass()).findBenchmarks(options);
+    new Runner(options.build()).run();
+  }
+}
@@ -0,0 +1,100 @@
+package hudson.plugins.accurev.benchmark;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.EnvVars;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.plugins.accurev.AccurevStream;
+import hudson.plugins.accurev.AccurevTransaction;
+import hudson.plugins.accurev.ParseChangeLog;
+import hudson.plugins.accurev.XmlParserFactory;
+import hudson.plugins.accurev.parsers.xml.ParseHistory;
+import hudson.plugins.accurev.parsers.xml.ParseShowStreams;
+import hudson.plugins.accurev.parsers.xml.ParseUpdate;
+import hudson.scm.ChangeLogSet;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.xmlpull.v1.XmlPullParser;
+
+/**
+ * Parsing of the command output a large depot produces: 10k transactions of 10 versions each, 5k
+ * streams, and an update of 100k elements.
+ */
+@JmhBenchmark
+public class ParserBenchmark {
+
+  static final int TRANSACTIONS = 10_000;
+  static final int VERSIONS = 10;
+  static final int STREAMS = 5_000;
+  static final int ELEMENTS = 100_000;
+
+  /** Runs a Jenkins instance, as transactions look their user up. */
+  public static class Fixtures extends JmhBenchmarkState {
+
+    String history;
+    String streams;
+    String update;
+    File changelog;
+    Run<?, ?> build;
+
+    @Override
+    public void setup() throws Exception {
+      history = AccurevXmlFixtures.history(TRANSACTIONS, VERSIONS);
+      streams = AccurevXmlFixtures.streams(STREAMS);
+      update = AccurevXmlFixtures.update(ELEMENTS);
+      changelog = File.createTempFile("changelog", ".xml");
+      Files.write(changelog.toPath(), history.getBytes(StandardCharsets.UTF_8));
+      EnvVars environment = new EnvVars("ACCUREV_SUBPATH", "module1/*,*/pkg7/*");
+      build = mock(Run.class);
+      when(build.getEnvironment(any(TaskListener.class))).thenReturn(environment);
+    }
+
+    @Override
+    public void tearDown() {
+      if (!changelog.delete()) {
+        changelog.deleteOnExit();
+      }
+    }
+
+    XmlPullParser parser(String xml) throws Exception {
+      XmlPullParser parser = XmlParserFactory.getFactory().newPullParser();
+      parser.setInput(new StringReader(xml));
+      return parser;
+    }
+  }
+
+  @Benchmark
+  public List<AccurevTransaction> parseHistory(Fixtures fixtures) throws Exception {
+    List<AccurevTransaction> transactions = new ArrayList<>();
+    new ParseHistory().parseAll(fixtures.parser(fixtures.history), transactions);
+    return transactions;
+  }
+
+  @Benchmark
+  public Map<String, AccurevStream> parseShowStreams(Fixtures fixtures) throws Exception {
+    return new ParseShowStreams().parse(fixtures.parser(fixtures.streams), "depot");
+  }
+
+  @Benchmark
+  public List<String> parseUpdate(Fixtures fixtures) throws Exception {
+    List<String> files = new ArrayList<>();
+    new ParseUpdate().parse(fixtures.parser(fixtures.update), files);
+    return files;
+  }
+
+  @Benchmark
+  public ChangeLogSet<AccurevTransaction> parseChangeLog(Fixtures fixtures) throws Exception {
+    return new ParseChangeLog().parse(fixtures.build, null, fixtures.changelog);
+  }
+}
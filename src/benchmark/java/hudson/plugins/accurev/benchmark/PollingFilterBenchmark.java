@@ -0,0 +1,78 @@
+package hudson.plugins.accurev.benchmark;
+
+import hudson.plugins.accurev.CheckForChanges;
+import hudson.plugins.accurev.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Matching 100k changed paths against polling filters none of them match, the worst case, next to
+ * matching every path against every filter one by one.
+ */
+@JmhBenchmark
+public class PollingFilterBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Fixtures {
+
+    @Param({"5", "50"})
+    public int filterCount;
+
+    List<String> paths;
+    List<String> filters;
+    PathMatcher matcher;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      paths = new ArrayList<>(ParserBenchmark.ELEMENTS);
+      for (int e = 0; e < ParserBenchmark.ELEMENTS; e++) {
+        paths.add(AccurevXmlFixtures.path(e).substring(3));
+      }
+      filters = new ArrayList<>(filterCount);
+      for (int f = 0; f < filterCount; f++) {
+        // one of each kind of pattern the matcher tells apart
+        filters.addAll(
+            Arrays.asList(
+                "docs/readme" + f + ".txt",
+                "site" + f + "/*",
+                "*.properties" + f,
+                "*/generated" + f + "/*",
+                "module*/src/test/*/Fixture" + f + "?.java"));
+      }
+      filters = filters.subList(0, filterCount);
+      matcher = PathMatcher.compile(filters);
+    }
+  }
+
+  @Benchmark
+  public boolean changesMatchFilter(Fixtures fixtures) {
+    return CheckForChanges.changesMatchFilter(fixtures.paths, fixtures.filters);
+  }
+
+  @Benchmark
+  public boolean precompiledMatcher(Fixtures fixtures) {
+    return CheckForChanges.changesMatchFilter(fixtures.paths, fixtures.matcher);
+  }
+
+  @Benchmark
+  public boolean wildcardMatchEachFilter(Fixtures fixtures) {
+    for (String path : fixtures.paths) {
+      for (String filter : fixtures.filters) {
+        if (FilenameUtils.wildcardMatch(path, filter, IOCase.INSENSITIVE)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,255 @@
+package hudson.plugins.accurev;
+
+import hudson.Launcher.ProcStarter;
+import hudson.Proc;
+import hudson.model.Node;
+import hudson.plugins.accurev.cmd.Command;
+import hudson.util.ArgumentListBuilder;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import jenkins.util.SystemProperties;
+
+/**
+ * Bounded pool of workers running AccuRev commands for one node, tool and server.
+ *
+ * <p>Each command still is its own <code>accurev</code> process, but the number of processes
+ * running at once against a server from a node is capped.
+ */
+public final class AccurevCommandPool {
+
+  /** Maximum number of AccuRev processes running at once per node, tool and server. */
+  private static final int SIZE =
+      SystemProperties.getInteger(AccurevCommandPool.class.getName() + ".size", 8);
+
+  private static final Map<String, AccurevCommandPool> POOLS = new ConcurrentHashMap<>();
+
+  private final String key;
+  private final ThreadPoolExecutor executor;
+  private final AtomicLong submitted = new AtomicLong();
+  private final AtomicLong completed = new AtomicLong();
+  private final AtomicLong totalWaitMillis = new AtomicLong();
+  private final AtomicLong totalRunMillis = new AtomicLong();
+  private final AtomicLong maxRunMillis = new AtomicLong();
+
+  private AccurevCommandPool(String key) {
+    this.key = key;
+    this.executor =
+        new ThreadPoolExecutor(
+            SIZE,
+            SIZE,
+            60L,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new NamingThreadFactory(new DaemonThreadFactory(), "AccuRev command " + key));
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Gets the pool a command is run through.
+   *
+   * @param node node the command runs on
+   * @param accurevTool name of the AccuRev tool
+   * @param command the command, whose <code>-H</code> argument identifies the server
+   * @return the pool for the node, tool and server
+   */
+  static AccurevCommandPool forCommand(Node node, String accurevTool, ArgumentListBuilder command) {
+    String server = Command.getServerAddress(command);
+    String nodeName = node == null ? "" : node.getNodeName();
+    String key =
+        (nodeName.isEmpty() ? "(built-in)" : nodeName) + '|' + accurevTool + '|' + server;
+    return POOLS.computeIfAbsent(key, AccurevCommandPool::new);
+  }
+
+  /**
+   * All pools created so far, by node, tool and server.
+   *
+   * @return unmodifiable view of the pools
+   */
+  public static Map<String, AccurevCommandPool> getPools() {
+    return Collections.unmodifiableMap(POOLS);
+  }
+
+  /**
+   * Runs a command on one of the pool's workers and waits for it.
+   *
+   * @param <T> The type of the result of the command.
+   * @param command the command
+   * @return the result of the command
+   * @throws IOException if the command failed
+   * @throws InterruptedException if interrupted while waiting, in which case the process of the
+   *     command is killed and waited for
+   */
+  <T> T run(Task<T> command) throws IOException, InterruptedException {
+    final long queued = System.currentTimeMillis();
+    submitted.incrementAndGet();
+    final Running running = new Running();
+    final FutureTask<T> future =
+        new FutureTask<>(
+            () -> {
+              final long started = System.currentTimeMillis();
+              totalWaitMillis.addAndGet(started - queued);
+              try {
+                return command.call(running);
+              } finally {
+                final long elapsed = System.currentTimeMillis() - started;
+                totalRunMillis.addAndGet(elapsed);
+                maxRunMillis.accumulateAndGet(elapsed, Math::max);
+                completed.incrementAndGet();
+              }
+            });
+    executor.execute(future);
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      if (!executor.remove(future)) {
+        // Interrupting the worker would not end a read from the process's output, so the process
+        // is killed instead. It is waited for, so the caller holds its node permits until it's gone
+        try {
+          running.kill();
+        } catch (IOException | InterruptedException killFailure) {
+          e.addSuppressed(killFailure);
+        }
+        awaitQuietly(future);
+      }
+      throw e;
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof InterruptedException) {
+        throw (InterruptedException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  private static void awaitQuietly(Future<?> future) {
+    while (true) {
+      try {
+        future.get();
+        return;
+      } catch (InterruptedException ignored) {
+        // the process has been killed, so this does not take long
+      } catch (ExecutionException | CancellationException ignored) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * A command run by the pool.
+   *
+   * @param <T> The type of the result of the command.
+   */
+  @FunctionalInterface
+  interface Task<T> {
+
+    /**
+     * @param running starts the process of the command, so that it can be killed
+     * @return the result of the command
+     * @throws Exception if the command failed
+     */
+    T call(Running running) throws Exception;
+  }
+
+  /** The process of a command, once started. */
+  static final class Running {
+
+    private Proc proc;
+    private boolean killed;
+
+    /**
+     * Starts the process of the command.
+     *
+     * @param starter the process to start
+     * @return the started process
+     * @throws IOException if it could not be started
+     * @throws InterruptedException if the command was given up on before it started
+     */
+    Proc start(ProcStarter starter) throws IOException, InterruptedException {
+      synchronized (this) {
+        if (killed) {
+          throw new InterruptedException("Command given up on before it started");
+        }
+      }
+      final Proc started = starter.start();
+      final boolean kill;
+      synchronized (this) {
+        proc = started;
+        kill = killed;
+      }
+      if (kill) {
+        started.kill();
+      }
+      return started;
+    }
+
+    private void kill() throws IOException, InterruptedException {
+      final Proc started;
+      synchronized (this) {
+        killed = true;
+        started = proc;
+      }
+      if (started != null) {
+        started.kill();
+      }
+    }
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  /** @return number of commands waiting for a worker */
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  /** @return number of commands currently running */
+  public int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  /** @return number of commands submitted since startup */
+  public long getSubmittedCount() {
+    return submitted.get();
+  }
+
+  /** @return number of commands completed since startup */
+  public long getCompletedCount() {
+    return completed.get();
+  }
+
+  /** @return average time, in milliseconds, commands waited for a worker */
+  public long getAverageWaitMillis() {
+    final long count = completed.get();
+    return count == 0 ? 0 : totalWaitMillis.get() / count;
+  }
+
+  /** @return average time, in milliseconds, commands took to run */
+  public long getAverageRunMillis() {
+    final long count = completed.get();
+    return count == 0 ? 0 : totalRunMillis.get() / count;
+  }
+
+  /** @return longest time, in milliseconds, a command took to run */
+  public long getMaxRunMillis() {
+    return maxRunMillis.get();
+  }
+}
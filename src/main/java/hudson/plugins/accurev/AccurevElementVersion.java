@@ -0,0 +1,86 @@
+package hudson.plugins.accurev;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * One element version changed by a transaction. The directory part of the path is shared with every
+ * other element in the same directory, and the text shown in the change log is only built when
+ * asked for, as changelogs of large promotes are kept in memory with their build.
+ */
+public final class AccurevElementVersion {
+
+  private static final String VERSION_SEPARATOR = " --- Version - ";
+
+  /** Directories seen so far, held as long as an element refers to them. */
+  private static final Map<String, WeakReference<String>> DIRECTORIES = new WeakHashMap<>();
+
+  /** Directory including its trailing slash, <code>null</code> for top level elements. */
+  private final String directory;
+
+  private final String name;
+  private final String version;
+  private final String issueNum;
+
+  /**
+   * @param path path in the depot, with leading <code>/./</code> removed
+   * @param version real version, e.g. <code>3/1</code>, or <code>null</code> if unknown
+   * @param issueNum issue the version was promoted against, or <code>null</code>
+   */
+  public AccurevElementVersion(String path, String version, String issueNum) {
+    final int slash = path == null ? -1 : path.lastIndexOf('/');
+    if (slash < 0) {
+      this.directory = null;
+      this.name = path;
+    } else {
+      this.directory = intern(path.substring(0, slash + 1));
+      this.name = path.substring(slash + 1);
+    }
+    this.version = version;
+    this.issueNum = issueNum;
+  }
+
+  private static String intern(String directory) {
+    synchronized (DIRECTORIES) {
+      final WeakReference<String> ref = DIRECTORIES.get(directory);
+      final String existing = ref == null ? null : ref.get();
+      if (existing != null) {
+        return existing;
+      }
+      DIRECTORIES.put(directory, new WeakReference<>(directory));
+      return directory;
+    }
+  }
+
+  /** @return path in the depot */
+  public String getPath() {
+    if (directory == null) {
+      return name;
+    }
+    return directory + name;
+  }
+
+  /** @return real version, or <code>null</code> if unknown */
+  public String getVersion() {
+    return version;
+  }
+
+  /** @return issue, or <code>null</code> */
+  public String getIssueNum() {
+    return issueNum;
+  }
+
+  /** @return path, followed by the version when known, as shown in the change log */
+  public String getDisplayPath() {
+    if (version == null) {
+      return getPath();
+    }
+    return getPath() + VERSION_SEPARATOR + version;
+  }
+
+  @Override
+  public String toString() {
+    return getDisplayPath();
+  }
+}
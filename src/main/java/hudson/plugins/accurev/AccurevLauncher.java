@@ -9,23 +9,33 @@ import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.Launcher.ProcStarter;
+import hudson.Proc;
 import hudson.model.Computer;
 import hudson.model.Node;
 import hudson.model.TaskListener;
+import hudson.plugins.accurev.cmd.Command;
+import hudson.plugins.accurev.cmd.LoginSessions;
 import hudson.plugins.accurev.parsers.output.ParseIgnoreOutput;
 import hudson.plugins.accurev.parsers.output.ParseLastFewLines;
 import hudson.plugins.accurev.parsers.output.ParseOutputToStream;
 import hudson.util.ArgumentListBuilder;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.UnknownHostException;
+import java.nio.file.Files;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.model.Jenkins;
 import jenkins.plugins.accurev.AccurevTool;
+import jenkins.plugins.accurev.AccurevToolCache;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.commons.lang.StringUtils;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -39,6 +49,9 @@ public final class AccurevLauncher {
 
   private static final Logger LOGGER = Logger.getLogger(AccurevLauncher.class.getName());
 
+  /** Number of bytes of a streamed command's stdout and stderr kept for logging failures. */
+  private static final int TAIL_SIZE = 64 * 1024;
+
   /**
    * Runs a command and returns <code>true</code> if it passed, <code>false</code> if it failed, and
    * logs the errors.
@@ -48,7 +61,7 @@ public final class AccurevLauncher {
    * @param accurevTool Which tool to find
    * @param launcher Means of executing the command.
    * @param machineReadableCommand The command to be executed.
-   * @param synchronizationLockObjectOrNull The {@link ReentrantLock} object to be used to prevent
+   * @param synchronizationLockObjectOrNull The {@link NodeLock} object to be used to prevent
    *     concurrent execution on the same machine, or <code>null</code> if no synchronization is
    *     required.
    * @param environmentVariables The environment variables to be passed to the command.
@@ -65,7 +78,7 @@ public final class AccurevLauncher {
       String accurevTool,
       @NonNull final Launcher launcher, //
       @NonNull final ArgumentListBuilder machineReadableCommand, //
-      @Nullable final ReentrantLock synchronizationLockObjectOrNull, //
+      @Nullable final NodeLock synchronizationLockObjectOrNull, //
       @NonNull final EnvVars environmentVariables, //
       @NonNull final FilePath directoryToRunCommandFrom, //
       @NonNull final TaskListener listenerToLogFailuresTo, //
@@ -113,9 +126,10 @@ public final class AccurevLauncher {
   }
 
   /**
-   * As {@link #runCommand(String, String, Launcher, ArgumentListBuilder, ReentrantLock, EnvVars,
+   * As {@link #runCommand(String, String, Launcher, ArgumentListBuilder, NodeLock, EnvVars,
    * FilePath, TaskListener, Logger, ICmdOutputParser, Object)} but uses an {@link
-   * ICmdOutputXmlParser} instead.
+   * ICmdOutputXmlParser} instead, which reads the output while the command is running rather than
+   * after it has been captured in full.
    *
    * @param <TResult> The type of the result returned by the parser.
    * @param <TContext> The type of data to be passed to the parser. Can be
@@ -141,7 +155,7 @@ public final class AccurevLauncher {
       String accurevTool,
       @NonNull final Launcher launcher, //
       @NonNull final ArgumentListBuilder machineReadableCommand, //
-      @Nullable final ReentrantLock synchronizationLockObjectOrNull, //
+      @Nullable final NodeLock synchronizationLockObjectOrNull, //
       @NonNull final EnvVars environmentVariables, //
       @NonNull final FilePath directoryToRunCommandFrom, //
       @NonNull final TaskListener listenerToLogFailuresTo, //
@@ -150,7 +164,7 @@ public final class AccurevLauncher {
       @NonNull final ICmdOutputXmlParser<TResult, TContext> commandOutputParser, //
       @Nullable final TContext commandOutputParserContext)
       throws IOException {
-    return runCommand(
+    return streamCommand(
         humanReadableCommandName,
         accurevTool,
         launcher,
@@ -161,47 +175,19 @@ public final class AccurevLauncher {
         listenerToLogFailuresTo,
         loggerToLogFailuresTo,
         (cmdOutput, context) -> {
-          XmlPullParser parser = null;
-          try {
-            parser = xmlParserFactory.newPullParser();
-            parser.setInput(cmdOutput, null);
-            final TResult result = commandOutputParser.parse(parser, context);
-            parser.setInput(null);
-            parser = null;
-            return result;
-          } catch (XmlPullParserException ex) {
-            logCommandException(
-                machineReadableCommand,
-                directoryToRunCommandFrom,
-                humanReadableCommandName,
-                ex,
-                loggerToLogFailuresTo,
-                listenerToLogFailuresTo);
-            return null;
-          } finally {
-            if (parser != null) {
-              try {
-                parser.setInput(null);
-              } catch (XmlPullParserException ex) {
-                logCommandException(
-                    machineReadableCommand,
-                    directoryToRunCommandFrom,
-                    humanReadableCommandName,
-                    ex,
-                    loggerToLogFailuresTo,
-                    listenerToLogFailuresTo);
-              }
-              cmdOutput.close();
-            }
-          }
+          final XmlPullParser parser = xmlParserFactory.newPullParser();
+          parser.setInput(cmdOutput, null);
+          return commandOutputParser.parse(parser, context);
         },
-        commandOutputParserContext);
+        commandOutputParserContext,
+        null);
   }
 
   /**
-   * As {@link #runCommand(String, String, Launcher, ArgumentListBuilder, ReentrantLock, EnvVars,
+   * As {@link #runCommand(String, String, Launcher, ArgumentListBuilder, NodeLock, EnvVars,
    * FilePath, TaskListener, Logger, ICmdOutputParser, Object)} but uses an {@link
-   * ICmdOutputXmlParser} instead.
+   * ICmdOutputXmlParser} instead, which reads the output while the command is running rather than
+   * after it has been captured in full.
    *
    * @param <TResult> The type of the result returned by the parser.
    * @param <TContext> The type of data to be passed to the parser. Can be
@@ -227,7 +213,7 @@ public final class AccurevLauncher {
       String accurevTool,
       @NonNull final Launcher launcher, //
       @NonNull final ArgumentListBuilder machineReadableCommand, //
-      @Nullable final ReentrantLock synchronizationLockObjectOrNull, //
+      @Nullable final NodeLock synchronizationLockObjectOrNull, //
       @NonNull final EnvVars environmentVariables, //
       @NonNull final FilePath directoryToRunCommandFrom, //
       @NonNull final TaskListener listenerToLogFailuresTo, //
@@ -236,7 +222,7 @@ public final class AccurevLauncher {
       @NonNull final ICmdOutputXmlParser<TResult, TContext> commandOutputParser, //
       @Nullable final TContext commandOutputParserContext)
       throws IOException {
-    return runCommand(
+    return streamCommand(
         humanReadableCommandName,
         accurevTool,
         launcher,
@@ -247,41 +233,68 @@ public final class AccurevLauncher {
         listenerToLogFailuresTo,
         loggerToLogFailuresTo,
         (cmdOutput, context) -> {
-          XmlPullParser parser = null;
-          try {
-            parser = xmlParserFactory.newPullParser();
-            parser.setInput(cmdOutput, null);
-            final TResult result = commandOutputParser.parseAll(parser, context);
-            parser.setInput(null);
-            parser = null;
-            return result;
-          } catch (XmlPullParserException ex) {
-            logCommandException(
-                machineReadableCommand,
-                directoryToRunCommandFrom,
-                humanReadableCommandName,
-                ex,
-                loggerToLogFailuresTo,
-                listenerToLogFailuresTo);
-            return null;
-          } finally {
-            if (parser != null) {
-              try {
-                parser.setInput(null);
-              } catch (XmlPullParserException ex) {
-                logCommandException(
-                    machineReadableCommand,
-                    directoryToRunCommandFrom,
-                    humanReadableCommandName,
-                    ex,
-                    loggerToLogFailuresTo,
-                    listenerToLogFailuresTo);
-              }
-              cmdOutput.close();
-            }
-          }
+          final XmlPullParser parser = xmlParserFactory.newPullParser();
+          parser.setInput(cmdOutput, null);
+          return commandOutputParser.parseAll(parser, context);
+        },
+        commandOutputParserContext,
+        null);
+  }
+
+  /**
+   * As {@link #runCommand(String, String, Launcher, ArgumentListBuilder, NodeLock, EnvVars,
+   * FilePath, TaskListener, Logger, XmlPullParserFactory, ICmdOutputXmlParser, Object)} for a
+   * parser that can stop reading before the end of the output. When it returns <code>true</code>,
+   * having seen what it was looking for, the command is ended there instead of being left to
+   * finish, and counts as a success.
+   *
+   * @param <TContext> The type of data to be passed to the parser.
+   * @param humanReadableCommandName Human readable command
+   * @param accurevTool Which tool to find
+   * @param launcher launcher
+   * @param machineReadableCommand Machine readable command
+   * @param synchronizationLockObjectOrNull Synchronization lock
+   * @param environmentVariables Environment Variables
+   * @param directoryToRunCommandFrom Where to run commands from
+   * @param listenerToLogFailuresTo logging failures to listener
+   * @param loggerToLogFailuresTo logging failures to logger
+   * @param xmlParserFactory The {@link XmlPullParserFactory} to be used to create the parser.
+   * @param commandOutputParser Command output parser, returning whether it stopped early
+   * @param commandOutputParserContext Context of Command output parser
+   * @return whether the parser stopped early, or <code>null</code> if an error occurred.
+   * @throws IOException handle it above
+   */
+  public static <TContext> Boolean runCommandUntilStopped( //
+      @NonNull final String humanReadableCommandName, //
+      String accurevTool,
+      @NonNull final Launcher launcher, //
+      @NonNull final ArgumentListBuilder machineReadableCommand, //
+      @Nullable final NodeLock synchronizationLockObjectOrNull, //
+      @NonNull final EnvVars environmentVariables, //
+      @NonNull final FilePath directoryToRunCommandFrom, //
+      @NonNull final TaskListener listenerToLogFailuresTo, //
+      @NonNull final Logger loggerToLogFailuresTo, //
+      @NonNull final XmlPullParserFactory xmlParserFactory, //
+      @NonNull final ICmdOutputXmlParser<Boolean, TContext> commandOutputParser, //
+      @Nullable final TContext commandOutputParserContext)
+      throws IOException {
+    return streamCommand(
+        humanReadableCommandName,
+        accurevTool,
+        launcher,
+        machineReadableCommand,
+        synchronizationLockObjectOrNull,
+        environmentVariables,
+        directoryToRunCommandFrom,
+        listenerToLogFailuresTo,
+        loggerToLogFailuresTo,
+        (cmdOutput, context) -> {
+          final XmlPullParser parser = xmlParserFactory.newPullParser();
+          parser.setInput(cmdOutput, null);
+          return commandOutputParser.parse(parser, context);
         },
-        commandOutputParserContext);
+        commandOutputParserContext,
+        Boolean.TRUE::equals);
   }
 
   /**
@@ -296,7 +309,7 @@ public final class AccurevLauncher {
    * @param accurevTool Which tool to find
    * @param launcher Means of executing the command.
    * @param machineReadableCommand The command to be executed.
-   * @param synchronizationLockObjectOrNull The {@link ReentrantLock} object to be used to prevent
+   * @param synchronizationLockObjectOrNull The {@link NodeLock} object to be used to prevent
    *     concurrent execution on the same machine, or <code>null</code> if no synchronization is
    *     required.
    * @param environmentVariables The environment variables to be passed to the command.
@@ -315,7 +328,7 @@ public final class AccurevLauncher {
       String accurevTool,
       @NonNull final Launcher launcher, //
       @NonNull final ArgumentListBuilder machineReadableCommand, //
-      @Nullable final ReentrantLock synchronizationLockObjectOrNull, //
+      @Nullable final NodeLock synchronizationLockObjectOrNull, //
       @NonNull final EnvVars environmentVariables, //
       @NonNull final FilePath directoryToRunCommandFrom, //
       @NonNull final TaskListener listenerToLogFailuresTo, //
@@ -327,6 +340,11 @@ public final class AccurevLauncher {
         final ByteArrayStream stderr = new ByteArrayStream()) {
       final OutputStream stdoutStream = stdout.getOutput();
       final OutputStream stderrStream = stderr.getOutput();
+      final AccurevCommandPool pool =
+          AccurevCommandPool.forCommand(
+              workspaceToNode(directoryToRunCommandFrom), accurevTool, machineReadableCommand);
+      // classified before createProcess puts the executable in front of the verb
+      final CommandClass commandClass = CommandClass.of(machineReadableCommand);
       final ProcStarter starter =
           createProcess(
               launcher,
@@ -344,7 +362,12 @@ public final class AccurevLauncher {
           loggerToLogFailuresTo,
           listenerToLogFailuresTo);
 
-      final int commandExitCode = runCommandToCompletion(starter, synchronizationLockObjectOrNull);
+      final int commandExitCode =
+          runToCompletion(
+              pool,
+              synchronizationLockObjectOrNull,
+              commandClass,
+              running -> running.start(starter).join()); // Exit Code from Command
       final InputStream outputFromCommand = stdout.getInput();
       final InputStream errorFromCommand = stderr.getInput();
       if (commandExitCode != 0) {
@@ -372,6 +395,281 @@ public final class AccurevLauncher {
     }
   }
 
+  /**
+   * Runs a command and writes its output straight to a file, without holding it in memory. Returns
+   * <code>true</code> if the command passed and <code>null</code> if it failed, in which case the
+   * file is deleted and the errors are logged.
+   *
+   * @param humanReadableCommandName Human-readable text saying what this command is. This appears
+   *     in the logs if there is a failure.
+   * @param accurevTool Which tool to find
+   * @param launcher Means of executing the command.
+   * @param machineReadableCommand The command to be executed.
+   * @param synchronizationLockObjectOrNull The {@link NodeLock} object to be used to prevent
+   *     concurrent execution on the same machine, or <code>null</code> if no synchronization is
+   *     required.
+   * @param environmentVariables The environment variables to be passed to the command.
+   * @param directoryToRunCommandFrom The direction that the command should be run in.
+   * @param listenerToLogFailuresTo One possible place to log failures, or <code>null</code>.
+   * @param loggerToLogFailuresTo Another place to log failures, or <code>null</code>.
+   * @param fileToWriteTo The file the command's output is written to.
+   * @return <code>true</code> if the command succeeded, <code>null</code> otherwise.
+   * @throws IOException handle it above
+   */
+  public static Boolean runCommandToFile( //
+      @NonNull final String humanReadableCommandName, //
+      String accurevTool,
+      @NonNull final Launcher launcher, //
+      @NonNull final ArgumentListBuilder machineReadableCommand, //
+      @Nullable final NodeLock synchronizationLockObjectOrNull, //
+      @NonNull final EnvVars environmentVariables, //
+      @NonNull final FilePath directoryToRunCommandFrom, //
+      @NonNull final TaskListener listenerToLogFailuresTo, //
+      @NonNull final Logger loggerToLogFailuresTo, //
+      @NonNull final File fileToWriteTo)
+      throws IOException {
+    final TailOutputStream stdoutTail = new TailOutputStream(TAIL_SIZE);
+    final TailOutputStream stderrTail = new TailOutputStream(TAIL_SIZE);
+    boolean success = false;
+    try {
+      final int commandExitCode;
+      try (OutputStream file = new FileOutputStream(fileToWriteTo);
+          OutputStream stdoutStream = new TeeOutputStream(file, stdoutTail)) {
+        final AccurevCommandPool pool =
+            AccurevCommandPool.forCommand(
+                workspaceToNode(directoryToRunCommandFrom), accurevTool, machineReadableCommand);
+        final CommandClass commandClass = CommandClass.of(machineReadableCommand);
+        final ProcStarter starter =
+            createProcess(
+                launcher,
+                machineReadableCommand,
+                environmentVariables,
+                directoryToRunCommandFrom,
+                listenerToLogFailuresTo,
+                stdoutStream,
+                stderrTail,
+                accurevTool);
+        logCommandExecution(
+            humanReadableCommandName,
+            machineReadableCommand,
+            directoryToRunCommandFrom,
+            loggerToLogFailuresTo,
+            listenerToLogFailuresTo);
+        commandExitCode =
+            runToCompletion(
+                pool,
+                synchronizationLockObjectOrNull,
+                commandClass,
+                running -> running.start(starter).join());
+      }
+      if (commandExitCode != 0) {
+        logCommandFailure(
+            machineReadableCommand,
+            directoryToRunCommandFrom,
+            humanReadableCommandName,
+            commandExitCode,
+            stdoutTail.toInputStream(),
+            stderrTail.toInputStream(),
+            loggerToLogFailuresTo,
+            listenerToLogFailuresTo);
+        return null;
+      }
+      success = true;
+      return Boolean.TRUE;
+    } catch (InterruptedException | IOException ex) {
+      logCommandException(
+          machineReadableCommand,
+          directoryToRunCommandFrom,
+          humanReadableCommandName,
+          ex,
+          loggerToLogFailuresTo,
+          listenerToLogFailuresTo);
+      return null;
+    } finally {
+      if (!success) {
+        Files.deleteIfExists(fileToWriteTo.toPath());
+      }
+    }
+  }
+
+  /**
+   * As {@link #runCommand(String, String, Launcher, ArgumentListBuilder, NodeLock, EnvVars,
+   * FilePath, TaskListener, Logger, ICmdOutputParser, Object)} but the parser reads the output
+   * while the command is running rather than after it has been captured in full. The parser's
+   * result is discarded if the command fails.
+   *
+   * @param <TResult> The type of the result returned by the parser.
+   * @param <TContext> The type of data to be passed to the parser.
+   * @param humanReadableCommandName Human readable command
+   * @param accurevTool Which tool to find
+   * @param launcher launcher
+   * @param machineReadableCommand Machine readable command
+   * @param synchronizationLockObjectOrNull Synchronization lock
+   * @param environmentVariables Environment Variables
+   * @param directoryToRunCommandFrom Where to run commands from
+   * @param listenerToLogFailuresTo logging failures to listener
+   * @param loggerToLogFailuresTo logging failures to logger
+   * @param commandOutputParser Command output parser
+   * @param commandOutputParserContext Context of Command output parser
+   * @return The data returned by the {@link ICmdOutputParser}, or <code>null</code> if an error
+   *     occurred.
+   * @throws IOException handle it above
+   */
+  public static <TResult, TContext> TResult runStreamingCommand( //
+      @NonNull final String humanReadableCommandName, //
+      String accurevTool,
+      @NonNull final Launcher launcher, //
+      @NonNull final ArgumentListBuilder machineReadableCommand, //
+      @Nullable final NodeLock synchronizationLockObjectOrNull, //
+      @NonNull final EnvVars environmentVariables, //
+      @NonNull final FilePath directoryToRunCommandFrom, //
+      @NonNull final TaskListener listenerToLogFailuresTo, //
+      @NonNull final Logger loggerToLogFailuresTo, //
+      @NonNull final ICmdOutputParser<TResult, TContext> commandOutputParser, //
+      @Nullable final TContext commandOutputParserContext)
+      throws IOException {
+    return streamCommand(
+        humanReadableCommandName,
+        accurevTool,
+        launcher,
+        machineReadableCommand,
+        synchronizationLockObjectOrNull,
+        environmentVariables,
+        directoryToRunCommandFrom,
+        listenerToLogFailuresTo,
+        loggerToLogFailuresTo,
+        commandOutputParser::parse,
+        commandOutputParserContext,
+        null);
+  }
+
+  /**
+   * Runs a command and parses its output while it is running. Only the last {@link #TAIL_SIZE}
+   * bytes of output are kept, for logging failures.
+   */
+  private static <TResult, TContext> TResult streamCommand( //
+      @NonNull final String humanReadableCommandName, //
+      String accurevTool,
+      @NonNull final Launcher launcher, //
+      @NonNull final ArgumentListBuilder machineReadableCommand, //
+      @Nullable final NodeLock synchronizationLockObjectOrNull, //
+      @NonNull final EnvVars environmentVariables, //
+      @NonNull final FilePath directoryToRunCommandFrom, //
+      @NonNull final TaskListener listenerToLogFailuresTo, //
+      @NonNull final Logger loggerToLogFailuresTo, //
+      @NonNull final StreamParser<TResult, TContext> commandOutputParser, //
+      @Nullable final TContext commandOutputParserContext, //
+      @Nullable final Predicate<TResult> stopsCommand)
+      throws IOException {
+    final TailOutputStream stdoutTail = new TailOutputStream(TAIL_SIZE);
+    final TailOutputStream stderrTail = new TailOutputStream(TAIL_SIZE);
+    try {
+      final AccurevCommandPool pool =
+          AccurevCommandPool.forCommand(
+              workspaceToNode(directoryToRunCommandFrom), accurevTool, machineReadableCommand);
+      final CommandClass commandClass = CommandClass.of(machineReadableCommand);
+      final ProcStarter starter =
+          createProcess(
+              launcher,
+              machineReadableCommand,
+              environmentVariables,
+              directoryToRunCommandFrom,
+              listenerToLogFailuresTo,
+              null,
+              stderrTail,
+              accurevTool);
+      logCommandExecution(
+          humanReadableCommandName,
+          machineReadableCommand,
+          directoryToRunCommandFrom,
+          loggerToLogFailuresTo,
+          listenerToLogFailuresTo);
+
+      final StreamedOutput<TResult> output =
+          runToCompletion(
+              pool,
+              synchronizationLockObjectOrNull,
+              commandClass,
+              running ->
+                  parseToCompletion(
+                      running.start(starter),
+                      stdoutTail,
+                      commandOutputParser,
+                      commandOutputParserContext,
+                      stopsCommand));
+      if (output.exitCode != 0) {
+        // a failed command's output is not expected to parse, so only the failure is reported
+        logCommandFailure(
+            machineReadableCommand,
+            directoryToRunCommandFrom,
+            humanReadableCommandName,
+            output.exitCode,
+            stdoutTail.toInputStream(),
+            stderrTail.toInputStream(),
+            loggerToLogFailuresTo,
+            listenerToLogFailuresTo);
+        return null;
+      }
+      if (output.parseFailure != null) {
+        logCommandException(
+            machineReadableCommand,
+            directoryToRunCommandFrom,
+            humanReadableCommandName,
+            output.parseFailure,
+            loggerToLogFailuresTo,
+            listenerToLogFailuresTo);
+        return null;
+      }
+      return output.result;
+    } catch (InterruptedException | IOException ex) {
+      logCommandException(
+          machineReadableCommand,
+          directoryToRunCommandFrom,
+          humanReadableCommandName,
+          ex,
+          loggerToLogFailuresTo,
+          listenerToLogFailuresTo);
+      return null;
+    }
+  }
+
+  private static <TResult, TContext> StreamedOutput<TResult> parseToCompletion( //
+      @NonNull final Proc proc, //
+      @NonNull final TailOutputStream stdoutTail, //
+      @NonNull final StreamParser<TResult, TContext> commandOutputParser, //
+      @Nullable final TContext commandOutputParserContext, //
+      @Nullable final Predicate<TResult> stopsCommand)
+      throws IOException, InterruptedException {
+    boolean finished = false;
+    try {
+      final StreamedOutput<TResult> output = new StreamedOutput<>();
+      try (InputStream stdout = new TeeInputStream(proc.getStdout(), stdoutTail)) {
+        try {
+          output.result = commandOutputParser.parse(stdout, commandOutputParserContext);
+        } catch (XmlPullParserException | UnhandledAccurevCommandOutput ex) {
+          output.parseFailure = ex;
+        }
+        if (output.parseFailure == null
+            && stopsCommand != null
+            && stopsCommand.test(output.result)) {
+          // the rest of the output is not wanted, so the command is ended rather than waited for
+          proc.kill();
+          finished = true;
+          return output;
+        }
+        // keep reading so the process can finish and the tail holds the end of its output
+        IOUtils.skip(stdout, Long.MAX_VALUE);
+      }
+      output.exitCode = proc.join();
+      finished = true;
+      return output;
+    } finally {
+      if (!finished) {
+        proc.kill();
+      }
+    }
+  }
+
   public static AccurevTool resolveAccurevTool(
       String accurevToolValue, TaskListener listener, String command) {
     AccurevTool accurevTool =
@@ -411,10 +709,17 @@ public final class AccurevLauncher {
       String accurevTool, Node builtOn, EnvVars env, TaskListener listener, String command) {
     AccurevTool tool = resolveAccurevTool(accurevTool, listener, command);
     if (builtOn != null) {
-      try {
-        tool = tool.forNode(builtOn, listener);
-      } catch (IOException | InterruptedException e) {
-        listener.getLogger().println("Failed to get accurev executable");
+      final String home = AccurevToolCache.getHome(builtOn, tool);
+      if (home != null) {
+        tool = new AccurevTool(tool.getName(), home, tool.getProperties().toList());
+      } else {
+        try {
+          final AccurevTool nodeTool = tool.forNode(builtOn, listener);
+          AccurevToolCache.putHome(builtOn, tool, nodeTool.getHome());
+          tool = nodeTool;
+        } catch (IOException | InterruptedException e) {
+          listener.getLogger().println("Failed to get accurev executable");
+        }
       }
     }
     if (env != null) {
@@ -423,19 +728,22 @@ public final class AccurevLauncher {
     return tool.getHome();
   }
 
-  private static Integer runCommandToCompletion( //
-      @NonNull final ProcStarter starter, //
-      final ReentrantLock synchronizationLockObjectOrNull)
+  private static <T> T runToCompletion( //
+      @NonNull final AccurevCommandPool pool, //
+      @Nullable final NodeLock synchronizationLockObjectOrNull, //
+      @NonNull final CommandClass commandClass, //
+      @NonNull final AccurevCommandPool.Task<T> command)
       throws IOException, InterruptedException {
+    // Lock before queuing so pool workers never wait on a lock held by a queued command's caller
     if (synchronizationLockObjectOrNull != null) {
-      synchronizationLockObjectOrNull.lockInterruptibly();
+      synchronizationLockObjectOrNull.lockInterruptibly(commandClass);
     }
 
     try {
-      return starter.join(); // Exit Code from Command
+      return pool.run(command);
     } finally {
       if (synchronizationLockObjectOrNull != null) {
-        synchronizationLockObjectOrNull.unlock();
+        synchronizationLockObjectOrNull.unlock(commandClass);
       }
     }
   }
@@ -446,14 +754,15 @@ public final class AccurevLauncher {
       @NonNull final EnvVars environmentVariables,
       @NonNull final FilePath directoryToRunCommandFrom,
       @NonNull TaskListener listener,
-      @NonNull final OutputStream stdoutStream,
+      @Nullable final OutputStream stdoutStream,
       @NonNull final OutputStream stderrStream,
       String accurevTool)
       throws IllegalStateException, IOException, InterruptedException {
+    final Node node = workspaceToNode(directoryToRunCommandFrom);
     String accurevPath =
         getAccurevExe(
             accurevTool,
-            workspaceToNode(directoryToRunCommandFrom),
+            node,
             environmentVariables,
             listener,
             machineReadableCommand.toCommandArray().length == 0
@@ -466,15 +775,22 @@ public final class AccurevLauncher {
         || !accurevPath.equals(machineReadableCommand.toCommandArray()[0])) {
       machineReadableCommand.prepend(accurevPath);
     }
-    if (!justAccurev(launcher, accurevPath)) {
-      throw new IllegalStateException(
-          "Cannot find accurev executable. Please check installation/tool");
+    if (!AccurevToolCache.isVerified(node, accurevPath)) {
+      if (!justAccurev(launcher, accurevPath)) {
+        throw new IllegalStateException(
+            "Cannot find accurev executable. Please check installation/tool");
+      }
+      AccurevToolCache.setVerified(node, accurevPath);
     }
     ProcStarter starter = launcher.launch().cmds(machineReadableCommand);
-    Node n = workspaceToNode(directoryToRunCommandFrom);
-    environmentVariables.putAll(buildEnvironment(n, listener));
+    environmentVariables.putAll(buildEnvironment(node, listener));
     starter = starter.envs(environmentVariables);
-    starter = starter.stdout(stdoutStream).stderr(stderrStream);
+    if (stdoutStream == null) {
+      starter = starter.readStdout();
+    } else {
+      starter = starter.stdout(stdoutStream);
+    }
+    starter = starter.stderr(stderrStream);
     starter = starter.pwd(directoryToRunCommandFrom);
     return starter;
   }
@@ -508,6 +824,8 @@ public final class AccurevLauncher {
           loggerToLogFailuresTo,
           taskListener);
     }
+    LoginSessions.invalidateOnAuthError(
+        workspaceToNode(directoryToRunCommandFrom), Command.getServerAddress(command), stderr);
     if (loggerToLogFailuresTo != null
         && (loggerToLogFailuresTo.isLoggable(Level.WARNING)
             || loggerToLogFailuresTo.isLoggable(Level.INFO))) {
@@ -708,6 +1026,21 @@ public final class AccurevLauncher {
     }
   }
 
+  /** Parses output as it is read from a running command. */
+  @FunctionalInterface
+  private interface StreamParser<TResult, TContext> {
+
+    TResult parse(InputStream cmdOutput, TContext context)
+        throws UnhandledAccurevCommandOutput, IOException, XmlPullParserException;
+  }
+
+  private static final class StreamedOutput<TResult> {
+
+    private TResult result;
+    private Exception parseFailure;
+    private int exitCode;
+  }
+
   /**
    * Exception that can be throw if the AccuRev command's output cannot be parsed or is otherwise
    * invalid.
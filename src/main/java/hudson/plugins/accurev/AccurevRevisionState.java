@@ -0,0 +1,104 @@
+package hudson.plugins.accurev;
+
+import hudson.scm.SCMRevisionState;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Highest transaction seen in each stream of the hierarchy a build was made from, so that polling
+ * only needs to ask whether any stream has moved on since. A build checking out several streams,
+ * as a pipeline may, records the hierarchies of all of them.
+ */
+public class AccurevRevisionState extends SCMRevisionState {
+
+  private final Map<String, Long> transactions;
+  /** Streams of each checkout, the built stream followed by the ancestors it gets changes from. */
+  private List<List<String>> hierarchies;
+
+  /**
+   * @param transactions highest transaction of each stream, starting with the built stream
+   */
+  public AccurevRevisionState(Map<String, Long> transactions) {
+    this.transactions = new LinkedHashMap<>(transactions);
+    this.hierarchies = new ArrayList<>();
+    this.hierarchies.add(new ArrayList<>(transactions.keySet()));
+  }
+
+  private AccurevRevisionState(Map<String, Long> transactions, List<List<String>> hierarchies) {
+    this.transactions = transactions;
+    this.hierarchies = hierarchies;
+  }
+
+  /** States recorded before several checkouts were kept only hold the streams of one. */
+  protected Object readResolve() {
+    if (hierarchies == null) {
+      hierarchies = new ArrayList<>();
+      hierarchies.add(new ArrayList<>(transactions.keySet()));
+    }
+    return this;
+  }
+
+  /**
+   * Adds the streams of another checkout of the same build.
+   *
+   * @param other state of the other checkout
+   * @return the state of both checkouts
+   */
+  public AccurevRevisionState merge(AccurevRevisionState other) {
+    final Map<String, Long> merged = new LinkedHashMap<>(transactions);
+    other.transactions.forEach(
+        (stream, transaction) -> merged.merge(stream, transaction, Math::max));
+    final List<List<String>> mergedHierarchies = new ArrayList<>(hierarchies);
+    for (List<String> hierarchy : other.hierarchies) {
+      if (!mergedHierarchies.contains(hierarchy)) {
+        mergedHierarchies.add(hierarchy);
+      }
+    }
+    return new AccurevRevisionState(merged, mergedHierarchies);
+  }
+
+  /**
+   * @param stream stream name
+   * @return if the highest transaction of the stream is known
+   */
+  public boolean hasTransaction(String stream) {
+    return transactions.containsKey(stream);
+  }
+
+  /**
+   * @param stream stream name
+   * @return highest transaction of the stream, or 0 if it had none or is not known
+   */
+  public long getTransaction(String stream) {
+    final Long transaction = transactions.get(stream);
+    return transaction == null ? 0 : transaction;
+  }
+
+  /** @return highest transaction of each stream */
+  public Map<String, Long> getTransactions() {
+    return Collections.unmodifiableMap(transactions);
+  }
+
+  /**
+   * @param stream stream name
+   * @return the ancestors the stream got changes from, nearest first, or an empty list if no
+   *     checkout recorded the stream
+   */
+  public List<String> getAncestors(String stream) {
+    for (List<String> hierarchy : hierarchies) {
+      final int index = hierarchy.indexOf(stream);
+      if (index >= 0) {
+        return Collections.unmodifiableList(hierarchy.subList(index + 1, hierarchy.size()));
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  @Override
+  public String toString() {
+    return "AccurevRevisionState" + transactions;
+  }
+}
@@ -24,13 +24,13 @@ import hudson.model.AbstractDescribableImpl;
 import hudson.model.Descriptor;
 import hudson.model.Job;
 import hudson.model.ModelObject;
-import hudson.model.Node;
 import hudson.model.ParameterDefinition;
 import hudson.model.ParameterValue;
 import hudson.model.ParametersDefinitionProperty;
 import hudson.model.Run;
 import hudson.model.StringParameterValue;
 import hudson.model.TaskListener;
+import hudson.plugins.accurev.cmd.ChangeLogCmd;
 import hudson.plugins.accurev.cmd.Login;
 import hudson.plugins.accurev.delegates.AbstractModeDelegate;
 import hudson.scm.ChangeLogParser;
@@ -49,12 +49,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.UUID;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 import jenkins.model.Jenkins;
 import jenkins.plugins.accurev.AccurevTool;
@@ -113,6 +111,8 @@ public class AccurevSCM extends SCM {
   private String serverUUID;
   @CheckForNull private String accurevTool = null;
   private Job<?, ?> activeProject;
+  private transient PathMatcher pollingFilterMatcher;
+  private transient PathMatcher updateFilterMatcher;
 
   @Deprecated
   public AccurevSCM(String serverName, String depot, String stream) {
@@ -237,6 +237,8 @@ public class AccurevSCM extends SCM {
   @DataBoundSetter
   public void setSubPath(String subPath) {
     this.subPath = fixEmpty(subPath);
+    this.pollingFilterMatcher = null;
+    this.updateFilterMatcher = null;
   }
 
   public boolean getSubPathOnly() {
@@ -255,6 +257,42 @@ public class AccurevSCM extends SCM {
   @DataBoundSetter
   public void setFilterForPollSCM(String filterForPollSCM) {
     this.filterForPollSCM = fixEmpty(filterForPollSCM);
+    this.pollingFilterMatcher = null;
+    this.updateFilterMatcher = null;
+  }
+
+  /**
+   * Gets the polling filters, or the sub-path if there are none, compiled for matching the paths
+   * changed on the server.
+   *
+   * @return See above.
+   */
+  public PathMatcher getPollingFilterMatcher() {
+    PathMatcher matcher = pollingFilterMatcher;
+    if (matcher == null) {
+      matcher = PathMatcher.compileFilterList(getPollingFilterList());
+      pollingFilterMatcher = matcher;
+    }
+    return matcher;
+  }
+
+  /**
+   * Gets the same filters as {@link #getPollingFilterMatcher()}, each matching any path containing
+   * it, for the files a reference tree update would bring in.
+   *
+   * @return See above.
+   */
+  public PathMatcher getUpdateFilterMatcher() {
+    PathMatcher matcher = updateFilterMatcher;
+    if (matcher == null) {
+      matcher = PathMatcher.compileContainsList(getPollingFilterList());
+      updateFilterMatcher = matcher;
+    }
+    return matcher;
+  }
+
+  private String getPollingFilterList() {
+    return StringUtils.isNotBlank(filterForPollSCM) ? filterForPollSCM : subPath;
   }
 
   public String getSnapshotNameFormat() {
@@ -394,11 +432,15 @@ public class AccurevSCM extends SCM {
       @CheckForNull File changelogFile,
       @CheckForNull SCMRevisionState baseline)
       throws IOException, InterruptedException {
-    //        TODO: Implement SCMRevisionState?
-    boolean checkout =
-        AccurevMode.findDelegate(this)
-            .checkout(build, launcher, workspace, listener, changelogFile);
+    AbstractModeDelegate delegate = AccurevMode.findDelegate(this);
+    boolean checkout = delegate.checkout(build, launcher, workspace, listener, changelogFile);
     if (checkout) {
+      AccurevRevisionState state = delegate.getRevisionState();
+      if (state != null) {
+        // a pipeline may check out several streams, each of which is polled
+        final AccurevRevisionState recorded = build.getAction(AccurevRevisionState.class);
+        build.addOrReplaceAction(recorded == null ? state : recorded.merge(state));
+      }
       listener.getLogger().println("Checkout done");
     } else {
       listener.getLogger().println("Checkout failed");
@@ -438,7 +480,7 @@ public class AccurevSCM extends SCM {
    * @param workspace The workspace the command will run in
    * @return See above.
    */
-  public synchronized ReentrantLock getOptionalLock(FilePath workspace) {
+  public NodeLock getOptionalLock(FilePath workspace) {
     final AccurevServer server = getServer();
     final boolean shouldLock = server != null && server.isSyncOperations();
     if (shouldLock) {
@@ -454,10 +496,7 @@ public class AccurevSCM extends SCM {
    * Also, the accurev client has been known to complain that it's not logged in if another client
    * on the same machine logs in again.
    */
-  public static final ReentrantLock MASTER_LOCK = new ReentrantLock(true);
-
-  private static final Map<String, ReentrantLock> nodeLockMap =
-      new HashMap<String, ReentrantLock>();
+  public static final NodeLock MASTER_LOCK = NodeLock.forNodeName("");
 
   /**
    * Gets the lock to be used on accurev commands where synchronization is mandatory.
@@ -465,21 +504,8 @@ public class AccurevSCM extends SCM {
    * @param workspace The workspace the command will run in
    * @return See above.
    */
-  public synchronized ReentrantLock getMandatoryLock(FilePath workspace) {
-    Node node = workspaceToNode(workspace);
-    String nodeName = (node != null) ? node.getNodeName() : "";
-
-    if (nodeName.isEmpty()) {
-      return MASTER_LOCK;
-    } else {
-      ReentrantLock lock = nodeLockMap.get(nodeName);
-
-      if (lock == null) {
-        nodeLockMap.put(nodeName, lock = new ReentrantLock(true));
-      }
-
-      return lock;
-    }
+  public NodeLock getMandatoryLock(FilePath workspace) {
+    return NodeLock.forNode(workspaceToNode(workspace));
   }
 
   @Override
@@ -489,8 +515,8 @@ public class AccurevSCM extends SCM {
       @Nullable Launcher launcher,
       @NonNull TaskListener listener)
       throws IOException, InterruptedException {
-    //        TODO: Implement SCMRevisionState?
-    return SCMRevisionState.NONE;
+    AccurevRevisionState state = build.getAction(AccurevRevisionState.class);
+    return state != null ? state : SCMRevisionState.NONE;
   }
 
   @Override
@@ -501,7 +527,6 @@ public class AccurevSCM extends SCM {
       @NonNull TaskListener listener,
       @NonNull SCMRevisionState baseline)
       throws IOException, InterruptedException {
-    //        TODO: Implement SCMRevisionState?
     if (activeProject != null && activeProject.isBuilding()) {
       // Skip polling while there is an active project.
       // This will prevent waiting for the workspace to become available.
@@ -753,6 +778,8 @@ public class AccurevSCM extends SCM {
     private boolean useRestrictedShowStreams;
     private boolean useColor;
     private boolean usePromoteListen;
+    private Secret promoteToken;
+    private boolean useBatchPolling;
     private boolean serverDisabled;
 
     @DataBoundConstructor
@@ -953,6 +980,33 @@ public class AccurevSCM extends SCM {
       this.usePromoteListen = usePromoteListen;
     }
 
+    /**
+     * Token a promote notification must carry for its jobs to be built straight away, rather than
+     * only polled.
+     *
+     * @return the token, or <code>null</code> if none is set
+     */
+    public Secret getPromoteToken() {
+      return promoteToken;
+    }
+
+    @DataBoundSetter
+    public void setPromoteToken(Secret promoteToken) {
+      this.promoteToken =
+          promoteToken == null || StringUtils.isEmpty(promoteToken.getPlainText())
+              ? null
+              : promoteToken;
+    }
+
+    public boolean isUseBatchPolling() {
+      return useBatchPolling;
+    }
+
+    @DataBoundSetter
+    public void setUseBatchPolling(boolean useBatchPolling) {
+      this.useBatchPolling = useBatchPolling;
+    }
+
     public boolean isServerDisabled() {
       return serverDisabled;
     }
@@ -1071,6 +1125,18 @@ public class AccurevSCM extends SCM {
           return FormValidation.error("FAILURE : " + e.getMessage());
         }
       }
+
+      @SuppressWarnings("unused")
+      @RequirePOST
+      public FormValidation doRefreshWebURL(@QueryParameter String uuid) {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        AccurevServer server = AccurevSCM.configuration().getServer(uuid);
+        if (server == null) {
+          return FormValidation.warning("Save the server before refreshing its web UI URL");
+        }
+        ChangeLogCmd.refreshWebURL(server);
+        return FormValidation.ok("The web UI URL will be read again by the next build");
+      }
     }
   }
 
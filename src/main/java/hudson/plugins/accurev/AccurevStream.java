@@ -49,6 +49,24 @@ public class AccurevStream implements Serializable {
     this.startTime = startTime == null ? null : (Date) startTime.clone();
   }
 
+  /**
+   * Copies a stream, without its parent and children.
+   *
+   * @param stream stream to copy
+   */
+  AccurevStream(AccurevStream stream) {
+    this(
+        stream.name,
+        stream.number,
+        stream.depot,
+        stream.basisName,
+        stream.basisNumber,
+        stream.dynamic,
+        stream.type,
+        stream.time,
+        stream.startTime);
+  }
+
   private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
     in.defaultReadObject();
 
@@ -4,10 +4,13 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.model.User;
 import hudson.scm.ChangeLogSet;
 import hudson.scm.EditType;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Function;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
@@ -18,15 +21,14 @@ public final class AccurevTransaction extends ChangeLogSet.Entry {
 
   private static final String FIELD_SEPARATOR = ", ";
   private static final String EQ = "=";
-  private final List<String> affectedPaths = new ArrayList<>();
-  private final List<String> affectedRawPaths = new ArrayList<>();
-  private final List<String> fileRevisions = new ArrayList<>();
+  private final List<AccurevElementVersion> elements = new ArrayList<>();
   //    private String revision;
   private User author;
   private Date date;
   private String msg;
   private String action;
   private String id;
+  private String stream;
   private String issueNum;
   private String webuiURLforTrans;
   private String webuiURLforIssue;
@@ -63,10 +65,6 @@ public final class AccurevTransaction extends ChangeLogSet.Entry {
     this.webuiURLforIssue = webuiURLforIssue;
   }
 
-  public void addFileRevision(String revision) {
-    fileRevisions.add(revision);
-  }
-
   @Exported
   public User getAuthor() {
     return author;
@@ -80,16 +78,33 @@ public final class AccurevTransaction extends ChangeLogSet.Entry {
    */
   @Exported
   public Collection<String> getAffectedPaths() {
-    return affectedPaths;
+    return new ElementView(AccurevElementVersion::getDisplayPath);
   }
 
+  /**
+   * Paths of the elements changed, without their version.
+   *
+   * @return never null.
+   */
   public List<String> getAffectedRawPaths() {
-    return affectedRawPaths;
+    return new ElementView(AccurevElementVersion::getPath);
   }
 
+  /** @return versions of the elements changed, where known */
   @Exported
   public Collection<String> getFileRevisions() {
-    return fileRevisions;
+    final List<String> revisions = new ArrayList<>();
+    for (AccurevElementVersion element : elements) {
+      if (element.getVersion() != null) {
+        revisions.add(element.getVersion());
+      }
+    }
+    return revisions;
+  }
+
+  /** @return the element versions changed by this transaction */
+  public List<AccurevElementVersion> getElements() {
+    return Collections.unmodifiableList(elements);
   }
 
   @Exported
@@ -150,11 +165,16 @@ public final class AccurevTransaction extends ChangeLogSet.Entry {
   }
 
   public void addAffectedPath(String path) {
-    affectedPaths.add(path);
+    elements.add(new AccurevElementVersion(path, null, null));
   }
 
-  public void addAffectedRawPath(String path) {
-    affectedRawPaths.add(path);
+  /**
+   * @param path path in the depot
+   * @param version real version, or <code>null</code> if unknown
+   * @param issueNum issue, or <code>null</code>
+   */
+  public void addElement(String path, String version, String issueNum) {
+    elements.add(new AccurevElementVersion(path, version, issueNum));
   }
 
   /**
@@ -194,6 +214,25 @@ public final class AccurevTransaction extends ChangeLogSet.Entry {
     this.id = id;
   }
 
+  /**
+   * Getter for stream, the stream or workspace the transaction was recorded in. Only known when
+   * the history was read for the whole depot.
+   *
+   * @return stream name, or <code>null</code> if unknown
+   */
+  public String getStream() {
+    return stream;
+  }
+
+  /**
+   * Setter for stream
+   *
+   * @param stream stream name the transaction was recorded in
+   */
+  public void setStream(String stream) {
+    this.stream = stream;
+  }
+
   @Override
   public String toString() {
     return '['
@@ -228,4 +267,32 @@ public final class AccurevTransaction extends ChangeLogSet.Entry {
         + //
         ']';
   }
+
+  /**
+   * Live view of the elements as strings, built as they are read. Removing from it removes the
+   * element.
+   */
+  private final class ElementView extends AbstractList<String> {
+
+    private final Function<AccurevElementVersion, String> mapper;
+
+    ElementView(Function<AccurevElementVersion, String> mapper) {
+      this.mapper = mapper;
+    }
+
+    @Override
+    public String get(int index) {
+      return mapper.apply(elements.get(index));
+    }
+
+    @Override
+    public String remove(int index) {
+      return mapper.apply(elements.remove(index));
+    }
+
+    @Override
+    public int size() {
+      return elements.size();
+    }
+  }
 }
@@ -1,48 +1,76 @@
 package hudson.plugins.accurev;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 
-/** Simple class to capture the output of something, and then allow that output to be read. */
+/**
+ * Simple class to capture the output of something, and then allow that output to be read.
+ *
+ * <p>Output is held in memory until it grows past {@link #THRESHOLD} bytes, after which it is moved
+ * to a temporary file that is deleted on {@link #close()}.
+ */
 public class ByteArrayStream implements Closeable {
 
-  private final Output mOutputStream = new Output();
+  private static final Logger LOGGER = Logger.getLogger(ByteArrayStream.class.getName());
+
+  /** Number of bytes kept in memory before the output is moved to a temporary file. */
+  static final int THRESHOLD =
+      SystemProperties.getInteger(ByteArrayStream.class.getName() + ".threshold", 1024 * 1024);
+
+  private final DeferredFileOutputStream mOutputStream =
+      new DeferredFileOutputStream(THRESHOLD, "accurev", ".out", null);
+
+  private final List<InputStream> mInputStreams = new ArrayList<>();
 
   /**
-   * Gets the {@link ByteArrayOutputStream} to which data can be written.
+   * Gets the {@link OutputStream} to which data can be written.
    *
    * @return See above.
    */
-  public ByteArrayOutputStream getOutput() {
+  public OutputStream getOutput() {
     return mOutputStream;
   }
 
   /**
    * Gets an {@link InputStream} that'll contain all the data that was written to {@link
-   * #getOutput()} thus far.
+   * #getOutput()}.
    *
-   * <p>Note that it does NOT read any data written after this method completes and it is NOT
-   * thread-safe (if data is being written to when this method gets called, behaviour is undefined).
+   * <p>Note that this closes the output, so nothing more can be written once it has been called.
    *
    * @return See above.
+   * @throws IOException if the output could not be read back
    */
-  public InputStream getInput() {
-    return mOutputStream.toInputStream();
+  public InputStream getInput() throws IOException {
+    mOutputStream.close();
+    final InputStream input = mOutputStream.toInputStream();
+    mInputStreams.add(input);
+    return input;
   }
 
   public void close() throws IOException {
-    mOutputStream.reset();
     mOutputStream.close();
-  }
-
-  private static final class Output extends ByteArrayOutputStream {
-
-    /** Returns an {@link InputStream} of our data without copying the data. */
-    InputStream toInputStream() {
-      return new ByteArrayInputStream(super.buf, 0, super.count);
+    for (InputStream input : mInputStreams) {
+      input.close();
+    }
+    mInputStreams.clear();
+    final File file = mOutputStream.getFile();
+    if (!mOutputStream.isInMemory() && file != null) {
+      try {
+        Files.deleteIfExists(file.toPath());
+      } catch (IOException e) {
+        LOGGER.log(Level.FINE, "Failed to delete " + file, e);
+        file.deleteOnExit();
+      }
     }
   }
 }
@@ -1,25 +1,29 @@
 package hudson.plugins.accurev;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.TaskListener;
 import hudson.plugins.accurev.AccurevSCM.AccurevServer;
 import hudson.plugins.accurev.cmd.History;
+import hudson.plugins.accurev.parsers.xml.ParseHistory;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOCase;
-import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 
 public class CheckForChanges {
 
@@ -48,14 +52,7 @@ public class CheckForChanges {
       Logger logger,
       AccurevSCM scm,
       int version) {
-    String filterForPollSCM = scm.getFilterForPollSCM();
-    String subPath = scm.getSubPath();
-    List<String> validTransactionTypes;
-    if (stream.getType().name().equalsIgnoreCase("workspace")) {
-      validTransactionTypes = AccurevSCM.DEFAULT_VALID_WORKSPACE_TRANSACTION_TYPES;
-    } else {
-      validTransactionTypes = AccurevSCM.DEFAULT_VALID_STREAM_TRANSACTION_TYPES;
-    }
+    List<String> validTransactionTypes = getValidTransactionTypes(stream);
     String transactionTypes = String.join(",", validTransactionTypes);
     listener
         .getLogger()
@@ -68,7 +65,7 @@ public class CheckForChanges {
                 + "]");
     boolean isTransLatestThanBuild = false;
     Set<String> serverPaths = new HashSet<String>();
-    Set<String> pollingFilters = getListOfPollingFilters(filterForPollSCM, subPath);
+    PathMatcher pollingFilters = scm.getPollingFilterMatcher();
 
     // AR version 7+ supports combined transaction type hist call.
     if (version < 7) {
@@ -105,6 +102,11 @@ public class CheckForChanges {
                 }
               }
             }
+            if (buildDate != null
+                && buildDate.before(tempTransaction.getDate())
+                && isTopologyChange(tempTransaction)) {
+              StreamTopologyCache.invalidate(server, scm.getDepot(), tempTransaction.getId());
+            }
             latestCodeChangeTransaction = tempTransaction;
             if (latestCodeChangeTransaction.getDate().equals(AccurevSCM.NO_TRANS_DATE)) {
               listener.getLogger().println("No last transaction found.");
@@ -134,39 +136,42 @@ public class CheckForChanges {
       SimpleDateFormat formatter = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
       String dateRange = formatter.format(buildDate);
 
-      List<AccurevTransaction> tempTransaction;
+      final FirstChange firstChange =
+          new FirstChange(server, scm.getDepot(), pollingFilters, null, false);
       try {
         // history for all transaction types in time range from last build - now.
-        tempTransaction =
-            History.getTransactionsRange(
-                scm,
-                server,
-                accurevEnv,
-                workspace,
-                listener,
-                launcher,
-                stream.getName(),
-                transactionTypes,
-                dateRange);
-        if (!tempTransaction.isEmpty()) {
-          for (AccurevTransaction t : tempTransaction) {
-            if (t.getAffectedPaths().isEmpty()
-                && (t.getAction().equals("mkstream")
-                    || t.getAction().equals("chstream")
-                    || t.getAction().equals("defcomp"))) {
-              listener.getLogger().println("Last valid transaction " + tempTransaction);
-              isTransLatestThanBuild = true;
-            } else {
-              serverPaths.addAll(t.getAffectedPaths());
-            }
-          }
+        List<AccurevTransaction> tempTransaction = null;
+        if (server.isUseBatchPolling()) {
+          tempTransaction =
+              DepotPollingCoordinator.getTransactions(
+                  scm,
+                  server,
+                  accurevEnv,
+                  workspace,
+                  listener,
+                  launcher,
+                  stream.getName(),
+                  validTransactionTypes,
+                  buildDate);
         }
-
-        if (serverPaths.size() > 0) {
-          if (changesMatchFilter(serverPaths, pollingFilters)) {
-            isTransLatestThanBuild = true;
-            listener.getLogger().println("Last valid transaction " + tempTransaction);
-          }
+        if (tempTransaction != null) {
+          firstChange.visitAll(tempTransaction);
+        } else {
+          History.visitTransactionsRange(
+              scm,
+              server,
+              accurevEnv,
+              workspace,
+              listener,
+              launcher,
+              stream.getName(),
+              transactionTypes,
+              dateRange,
+              firstChange);
+        }
+        if (firstChange.getMatch() != null) {
+          isTransLatestThanBuild = true;
+          listener.getLogger().println("Last valid transaction " + firstChange.getMatch());
         }
       } catch (IOException e) {
 
@@ -183,50 +188,443 @@ public class CheckForChanges {
     }
   }
 
-  public static boolean changesMatchFilter(
-      Collection<String> serverPaths, Collection<String> filters) {
-    if (CollectionUtils.isEmpty(filters)) {
-      // No filters, so always a match.
-      return true;
-    }
+  /**
+   * Checks a stream against the highest transaction it had when the last build was made. Only the
+   * latest transaction is looked up, unless it is of a type polling ignores, or polling filters
+   * require the paths of the transactions since then.
+   *
+   * @param server server
+   * @param accurevEnv accurev environment
+   * @param workspace workspace
+   * @param listener listener
+   * @param launcher launcher
+   * @param stream stream
+   * @param sinceTransaction highest transaction of the stream at the last build
+   * @param logger logger
+   * @param scm Accurev SCm
+   * @return if there are any new transactions in the stream since the last build was done
+   */
+  public static boolean checkStreamForChanges(
+      AccurevServer server,
+      EnvVars accurevEnv,
+      FilePath workspace,
+      TaskListener listener,
+      Launcher launcher,
+      AccurevStream stream,
+      long sinceTransaction,
+      Logger logger,
+      AccurevSCM scm) {
+    try {
+      final AccurevTransaction latest =
+          History.getLatestTransaction(
+              scm, server, accurevEnv, workspace, listener, launcher, stream.getName(), null);
+      if (latest == null || Long.parseLong(latest.getId()) <= sinceTransaction) {
+        listener
+            .getLogger()
+            .println(
+                "No transactions since "
+                    + sinceTransaction
+                    + " in stream ["
+                    + stream.getName()
+                    + "]");
+        return false;
+      }
+      if (isTopologyChange(latest)) {
+        StreamTopologyCache.invalidate(server, scm.getDepot(), latest.getId());
+      }
+      final PathMatcher pollingFilters = scm.getPollingFilterMatcher();
+      final List<String> validTransactionTypes = getValidTransactionTypes(stream);
+      if (pollingFilters.isEmpty() && validTransactionTypes.contains(latest.getAction())) {
+        listener.getLogger().println("Last valid transaction " + latest);
+        return true;
+      }
 
-    for (String path : serverPaths) {
-      path = sanitizeSlashes(path);
-      for (String filter : filters) {
-        if (pathMatcher(path, filter)) {
-          return true;
-        }
+      // The latest transaction is of a type polling ignores, or the filters need its paths
+      final FirstChange firstChange =
+          new FirstChange(
+              server,
+              scm.getDepot(),
+              pollingFilters,
+              t -> validTransactionTypes.contains(t.getAction()),
+              false);
+      History.visitTransactionsRange(
+          scm,
+          server,
+          accurevEnv,
+          workspace,
+          listener,
+          launcher,
+          stream.getName(),
+          null,
+          String.valueOf(sinceTransaction + 1),
+          firstChange);
+      if (firstChange.getMatch() != null) {
+        listener.getLogger().println("Last valid transaction " + firstChange.getMatch());
+        return true;
       }
+    } catch (IOException | NumberFormatException e) {
+      final String msg =
+          "getLatestTransaction failed when checking the stream "
+              + stream.getName()
+              + " for changes since transaction "
+              + sinceTransaction;
+      listener.getLogger().println(msg);
+      e.printStackTrace(listener.getLogger());
+      logger.log(Level.WARNING, msg, e);
     }
     return false;
   }
 
-  public static boolean pathMatcher(String path, String wildcard) {
-    return FilenameUtils.wildcardMatch(path, wildcard, IOCase.INSENSITIVE);
+  /**
+   * Checks a stream and the ancestors it gets changes from with a single history of the depot since
+   * the last build, instead of one history per stream.
+   *
+   * @param server server
+   * @param accurevEnv accurev environment
+   * @param workspace workspace
+   * @param listener listener
+   * @param launcher launcher
+   * @param streams the streams
+   * @param buildDate date of the last build
+   * @param logger logger
+   * @param scm Accurev SCm
+   * @return if there are any new transactions in the streams since the last build was done, or
+   *     <code>null</code> if the history could not be read or does not tell the streams apart, and
+   *     each stream must be checked on its own
+   */
+  @CheckForNull
+  public static Boolean checkStreamsForChanges(
+      AccurevServer server,
+      EnvVars accurevEnv,
+      FilePath workspace,
+      TaskListener listener,
+      Launcher launcher,
+      List<AccurevStream> streams,
+      Date buildDate,
+      Logger logger,
+      AccurevSCM scm) {
+    final String dateRange = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss").format(buildDate);
+    return checkStreamsForChanges(
+        server,
+        accurevEnv,
+        workspace,
+        listener,
+        launcher,
+        streams,
+        dateRange,
+        t -> true,
+        logger,
+        scm);
+  }
+
+  /**
+   * Checks a stream and the ancestors it gets changes from against the highest transaction each had
+   * when the last build was made, with a single history of the depot. Transaction numbers are
+   * shared by the whole depot, so whatever was made in any of the streams since the last build
+   * comes after the highest of these transactions, and only that needs reading. When nothing at
+   * all was made in the depot since, a single lookup of its latest transaction is enough. The
+   * history lists all transaction types at once, which needs a client of version 7 or later.
+   *
+   * @param server server
+   * @param accurevEnv accurev environment
+   * @param workspace workspace
+   * @param listener listener
+   * @param launcher launcher
+   * @param streams the streams
+   * @param state transactions of the streams at the last build
+   * @param logger logger
+   * @param scm Accurev SCm
+   * @return if there are any new transactions in the streams since the last build was done, or
+   *     <code>null</code> if the history could not be read or does not tell the streams apart, and
+   *     each stream must be checked on its own
+   */
+  @CheckForNull
+  public static Boolean checkStreamsForChanges(
+      AccurevServer server,
+      EnvVars accurevEnv,
+      FilePath workspace,
+      TaskListener listener,
+      Launcher launcher,
+      List<AccurevStream> streams,
+      AccurevRevisionState state,
+      Logger logger,
+      AccurevSCM scm) {
+    long highest = 0;
+    for (AccurevStream stream : streams) {
+      highest = Math.max(highest, state.getTransaction(stream.getName()));
+    }
+    try {
+      final AccurevTransaction latest =
+          History.getLatestTransaction(
+              scm, server, accurevEnv, workspace, listener, launcher, null, null);
+      if (latest == null || Long.parseLong(latest.getId()) <= highest) {
+        listener
+            .getLogger()
+            .println("No transactions since " + highest + " in depot [" + scm.getDepot() + "]");
+        return false;
+      }
+    } catch (IOException | NumberFormatException e) {
+      final String msg =
+          "getLatestTransaction failed when checking the depot "
+              + scm.getDepot()
+              + " for changes since transaction "
+              + highest;
+      listener.getLogger().println(msg);
+      e.printStackTrace(listener.getLogger());
+      logger.log(Level.WARNING, msg, e);
+      return null;
+    }
+    return checkStreamsForChanges(
+        server,
+        accurevEnv,
+        workspace,
+        listener,
+        launcher,
+        streams,
+        String.valueOf(highest + 1),
+        t -> NumberUtils.toLong(t.getId()) > state.getTransaction(t.getStream()),
+        logger,
+        scm);
   }
 
-  private static Set<String> getListOfPollingFilters(String filterForPollSCM, String subPath) {
-    if (StringUtils.isNotBlank(filterForPollSCM)) {
-      return splitAndSanitizeFilters(filterForPollSCM);
+  @CheckForNull
+  private static Boolean checkStreamsForChanges(
+      AccurevServer server,
+      EnvVars accurevEnv,
+      FilePath workspace,
+      TaskListener listener,
+      Launcher launcher,
+      List<AccurevStream> streams,
+      String range,
+      Predicate<AccurevTransaction> isNew,
+      Logger logger,
+      AccurevSCM scm) {
+    final Map<String, List<String>> typesByStream = new LinkedHashMap<>();
+    final Set<String> types = new LinkedHashSet<>();
+    for (AccurevStream stream : streams) {
+      typesByStream.put(stream.getName(), getValidTransactionTypes(stream));
+      types.addAll(getValidTransactionTypes(stream));
+    }
+    listener
+        .getLogger()
+        .println(
+            "Checking transactions of streams "
+                + typesByStream.keySet()
+                + " in the history of depot ["
+                + scm.getDepot()
+                + "]");
+    final FirstChange firstChange =
+        new FirstChange(
+            server,
+            scm.getDepot(),
+            scm.getPollingFilterMatcher(),
+            t -> {
+              final List<String> streamTypes = typesByStream.get(t.getStream());
+              return streamTypes != null
+                  && streamTypes.contains(t.getAction())
+                  && isNew.test(t);
+            },
+            true);
+    try {
+      History.visitTransactionsRange(
+          scm,
+          server,
+          accurevEnv,
+          workspace,
+          listener,
+          launcher,
+          null,
+          String.join(",", types),
+          range,
+          firstChange);
+    } catch (IOException e) {
+      final String msg =
+          "getTransactionsRange failed when checking the streams "
+              + typesByStream.keySet()
+              + " for changes";
+      listener.getLogger().println(msg);
+      e.printStackTrace(listener.getLogger());
+      logger.log(Level.WARNING, msg, e);
+      return null;
+    }
+    if (firstChange.isUnattributed()) {
+      logger.fine("Depot history of " + scm.getDepot() + " does not name streams");
+      return null;
     }
+    if (firstChange.getMatch() != null) {
+      listener.getLogger().println("Last valid transaction " + firstChange.getMatch());
+      return true;
+    }
+    return false;
+  }
 
-    return splitAndSanitizeFilters(subPath);
+  private static List<String> getValidTransactionTypes(AccurevStream stream) {
+    return stream.getType().name().equalsIgnoreCase("workspace")
+        ? AccurevSCM.DEFAULT_VALID_WORKSPACE_TRANSACTION_TYPES
+        : AccurevSCM.DEFAULT_VALID_STREAM_TRANSACTION_TYPES;
   }
 
-  private static Set<String> splitAndSanitizeFilters(String input) {
-    if (StringUtils.isBlank(input)) {
-      return null;
+  /**
+   * @param transaction transaction
+   * @return if the transaction changes the stream topology of the depot
+   */
+  private static boolean isTopologyChange(AccurevTransaction transaction) {
+    String action = transaction.getAction();
+    return "mkstream".equals(action) || "chstream".equals(action) || "defcomp".equals(action);
+  }
+
+  /**
+   * @param scm Accurev SCM
+   * @param serverPaths paths changed on the server
+   * @return if any of the paths match the polling filters, or sub-path, of the job
+   */
+  public static boolean changesMatchFilter(AccurevSCM scm, Collection<String> serverPaths) {
+    return changesMatchFilter(serverPaths, scm.getPollingFilterMatcher());
+  }
+
+  public static boolean changesMatchFilter(
+      Collection<String> serverPaths, Collection<String> filters) {
+    return changesMatchFilter(serverPaths, PathMatcher.compile(filters));
+  }
+
+  /**
+   * @param serverPaths paths changed on the server
+   * @param filters compiled filters
+   * @return if there are no filters, or any of the paths match them
+   */
+  public static boolean changesMatchFilter(Collection<String> serverPaths, PathMatcher filters) {
+    // No filters, so always a match.
+    return filters.isEmpty() || filters.matchesAny(serverPaths);
+  }
+
+  /**
+   * Looks for the first transaction of the history that changes a path the polling filters match,
+   * or the stream topology, and stops reading there, ending the <code>hist</code> command. The
+   * history is read newest first, so when reading stops early, older topology changes further down
+   * are not seen; the cached topology is then dropped, as a build is coming anyway.
+   */
+  private static final class FirstChange implements ParseHistory.Visitor {
+
+    private final AccurevServer server;
+    private final String depot;
+    private final PathMatcher filters;
+    private final Predicate<AccurevTransaction> wanted;
+    private final boolean needsStream;
+    private AccurevTransaction newest;
+    private AccurevTransaction match;
+    private Boolean isWanted;
+    private boolean hasVersions;
+    private boolean unattributed;
+
+    /**
+     * @param server server
+     * @param depot depot
+     * @param filters polling filters
+     * @param wanted transactions to look at, <code>null</code> for all
+     * @param needsStream whether to give up on a transaction that does not say which stream it was
+     *     made in
+     */
+    FirstChange(
+        AccurevServer server,
+        String depot,
+        PathMatcher filters,
+        Predicate<AccurevTransaction> wanted,
+        boolean needsStream) {
+      this.server = server;
+      this.depot = depot;
+      this.filters = filters;
+      this.wanted = wanted;
+      this.needsStream = needsStream;
+    }
+
+    @Override
+    public boolean transaction(AccurevTransaction transaction) {
+      if (newest == null) {
+        newest = transaction;
+      }
+      if (isTopologyChange(transaction)) {
+        StreamTopologyCache.invalidate(server, depot, transaction.getId());
+      }
+      isWanted = null;
+      hasVersions = false;
+      return true;
+    }
+
+    @Override
+    public boolean version(AccurevTransaction transaction, String path) {
+      hasVersions = true;
+      if (!isWanted(transaction)) {
+        return !unattributed;
+      }
+      if (filters.isEmpty() || filters.matches(path)) {
+        return found(transaction);
+      }
+      return true;
+    }
+
+    @Override
+    public boolean endTransaction(AccurevTransaction transaction) {
+      if (!isWanted(transaction)) {
+        return !unattributed;
+      }
+      if (filters.isEmpty() || (!hasVersions && isTopologyChange(transaction))) {
+        return found(transaction);
+      }
+      return true;
+    }
+
+    /** The stream of a transaction may only be known from its versions, so this is asked late. */
+    private boolean isWanted(AccurevTransaction transaction) {
+      if (isWanted == null) {
+        if (needsStream && transaction.getStream() == null) {
+          unattributed = true;
+          isWanted = false;
+        } else {
+          isWanted = wanted == null || wanted.test(transaction);
+        }
+      }
+      return isWanted;
     }
 
-    final char DELIMITER = ',';
-    final String STRIP_CHARS = " \t\n\r/";
-    String[] filters = StringUtils.split(sanitizeSlashes(input), DELIMITER);
-    filters = StringUtils.stripAll(filters, STRIP_CHARS);
+    private boolean found(AccurevTransaction transaction) {
+      match = transaction;
+      StreamTopologyCache.invalidate(server, depot, newest.getId());
+      return false;
+    }
 
-    return new HashSet<>(Arrays.asList(filters));
+    /**
+     * Visits transactions read already.
+     *
+     * @param transactions transactions, newest first
+     */
+    void visitAll(List<AccurevTransaction> transactions) {
+      for (AccurevTransaction t : transactions) {
+        if (!transaction(t)) {
+          return;
+        }
+        for (String path : t.getAffectedPaths()) {
+          if (!version(t, path)) {
+            return;
+          }
+        }
+        if (!endTransaction(t)) {
+          return;
+        }
+      }
+    }
+
+    /** @return the transaction found, or <code>null</code> */
+    AccurevTransaction getMatch() {
+      return match;
+    }
+
+    /** @return whether reading stopped on a transaction that did not name its stream */
+    boolean isUnattributed() {
+      return unattributed;
+    }
   }
 
-  private static String sanitizeSlashes(String input) {
-    return input.replace('\\', '/');
+  public static boolean pathMatcher(String path, String wildcard) {
+    return FilenameUtils.wildcardMatch(path, wildcard, IOCase.INSENSITIVE);
   }
 }
@@ -0,0 +1,94 @@
+package hudson.plugins.accurev;
+
+import hudson.util.ArgumentListBuilder;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import jenkins.util.SystemProperties;
+
+/**
+ * What an AccuRev command does, which decides how many of it may run at once on a node.
+ *
+ * @see NodeLock
+ */
+public enum CommandClass {
+  /** Logging in or out. Runs alone on the node. */
+  AUTH(1),
+  /** Only reads, such as <code>hist</code>, <code>show</code> or <code>files</code>. */
+  QUERY(4),
+  /** Changes a workspace, reference tree or stream, such as <code>update</code>. */
+  MUTATING(1);
+
+  private static final Set<String> AUTH_COMMANDS =
+      new HashSet<>(Arrays.asList("login", "logout", "setlocalpasswd"));
+
+  private static final Set<String> QUERY_COMMANDS =
+      new HashSet<>(
+          Arrays.asList(
+              "info",
+              "hist",
+              "show",
+              "files",
+              "stat",
+              "getconfig",
+              "synctime",
+              "diff",
+              "cat",
+              "anc",
+              "annotate",
+              "getpref",
+              "getproperty"));
+
+  private final int limit;
+
+  CommandClass(int defaultLimit) {
+    this.limit =
+        Math.max(
+            1,
+            SystemProperties.getInteger(
+                CommandClass.class.getName() + "." + name().toLowerCase(Locale.ENGLISH) + ".limit",
+                defaultLimit));
+  }
+
+  /**
+   * Gets the number of commands of this class allowed to run at once on a node. Set with the
+   * <code>hudson.plugins.accurev.CommandClass.query.limit</code> and <code>...mutating.limit</code>
+   * system properties; authentication always runs alone.
+   *
+   * @return See above.
+   */
+  public int getLimit() {
+    return this == AUTH ? 1 : limit;
+  }
+
+  /**
+   * Classifies a command by its verb. Commands not known to be harmless are taken to be mutating.
+   *
+   * @param command the accurev command line, without the executable. A command line that is run
+   *     again starts with it, in which case it is skipped.
+   * @return See above.
+   */
+  public static CommandClass of(ArgumentListBuilder command) {
+    final List<String> args = command.toList();
+    int index = 0;
+    if (!args.isEmpty() && isExecutable(args.get(0))) {
+      index++;
+    }
+    final String verb = index < args.size() ? args.get(index) : "";
+    if (AUTH_COMMANDS.contains(verb)) {
+      return AUTH;
+    }
+    if (QUERY_COMMANDS.contains(verb)) {
+      return QUERY;
+    }
+    return MUTATING;
+  }
+
+  /** No verb is named like the client, so an argument that is must be its executable. */
+  private static boolean isExecutable(String arg) {
+    final String name = arg.substring(Math.max(arg.lastIndexOf('/'), arg.lastIndexOf('\\')) + 1);
+    return name.toLowerCase(Locale.ENGLISH).startsWith("accurev");
+  }
+}
@@ -0,0 +1,284 @@
+package hudson.plugins.accurev;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.TaskListener;
+import hudson.plugins.accurev.AccurevSCM.AccurevServer;
+import hudson.plugins.accurev.cmd.History;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+
+/**
+ * Polls a depot once for every job using it.
+ *
+ * <p>Instead of every job running <code>accurev hist -s stream</code> for its stream and each of
+ * its ancestors, the history of the whole depot is read once from the oldest date any job polling
+ * it needs, for the transaction types those jobs poll for, and each job picks the transactions of
+ * its streams out of that batch. A batch is reused by every poll within a short window, so the
+ * number of history commands per polling cycle depends on the number of depots instead of the
+ * number of jobs.
+ */
+public final class DepotPollingCoordinator {
+
+  private static final Logger LOGGER = Logger.getLogger(DepotPollingCoordinator.class.getName());
+
+  /** How long, in seconds, a depot history batch is reused by other polls. */
+  private static final long WINDOW =
+      TimeUnit.SECONDS.toMillis(
+          SystemProperties.getLong(DepotPollingCoordinator.class.getName() + ".window", 60L));
+
+  /** How long, in minutes, a job that polled a depot is considered when sizing the next batch. */
+  private static final long DEMAND_WINDOW =
+      TimeUnit.MINUTES.toMillis(
+          SystemProperties.getLong(DepotPollingCoordinator.class.getName() + ".demand", 30L));
+
+  /**
+   * How far back, in hours, a batch may reach. Jobs needing older history query their streams on
+   * their own so a single stale job does not make every batch huge.
+   */
+  private static final long MAX_LOOKBACK =
+      TimeUnit.HOURS.toMillis(
+          SystemProperties.getLong(DepotPollingCoordinator.class.getName() + ".maxLookback", 24L));
+
+  private static final Map<String, Batch> BATCHES = new ConcurrentHashMap<>();
+
+  private DepotPollingCoordinator() {}
+
+  /**
+   * Gets the transactions of a stream since a date out of the depot-wide batch.
+   *
+   * @param scm Accurev SCM
+   * @param server server
+   * @param accurevEnv Accurev Enviroment
+   * @param workspace workspace
+   * @param listener listener
+   * @param launcher launcher
+   * @param stream stream
+   * @param transactionTypes transaction types to keep
+   * @param since date of the last build
+   * @return the transactions of the stream, or <code>null</code> if the batch cannot answer and
+   *     the stream must be queried on its own
+   * @throws IOException if the history command failed
+   */
+  @CheckForNull
+  public static List<AccurevTransaction> getTransactions( //
+      final AccurevSCM scm, //
+      final AccurevServer server, //
+      final EnvVars accurevEnv, //
+      final FilePath workspace, //
+      final TaskListener listener, //
+      final Launcher launcher, //
+      final String stream, //
+      final Collection<String> transactionTypes, //
+      final Date since)
+      throws IOException {
+    final long now = System.currentTimeMillis();
+    // hist -t works with second precision
+    final long from = since.getTime() / 1000 * 1000;
+    if (now - from > MAX_LOOKBACK) {
+      return null;
+    }
+    final Batch batch =
+        BATCHES.computeIfAbsent(server.getUuid() + '/' + scm.getDepot(), k -> new Batch());
+    final CompletableFuture<Void> loading;
+    final long oldest;
+    final Set<String> types;
+    synchronized (batch) {
+      batch.demand.put(scm, new Demand(from, now, transactionTypes));
+      if (batch.covers(from, now, transactionTypes)) {
+        return batch.select(stream, transactionTypes, from);
+      }
+      if (batch.loading != null) {
+        // another job is reading the depot, if that misses what this one needs it reads on its own
+        loading = batch.loading;
+        oldest = 0;
+        types = null;
+      } else {
+        loading = new CompletableFuture<>();
+        batch.loading = loading;
+        oldest = batch.oldestDemand(now);
+        types = batch.demandedTypes();
+      }
+    }
+    if (types == null) {
+      await(loading, scm.getDepot());
+      synchronized (batch) {
+        return batch.covers(from, now, transactionTypes)
+            ? batch.select(stream, transactionTypes, from)
+            : null;
+      }
+    }
+    final List<AccurevTransaction> transactions =
+        load(scm, server, accurevEnv, workspace, listener, launcher, batch, loading, oldest, types);
+    return transactions == null ? null : select(transactions, stream, transactionTypes, from);
+  }
+
+  /**
+   * Reads the history of the depot into a batch, outside its monitor so that polls answered by
+   * the current batch do not wait on the command.
+   *
+   * @return the transactions read, or <code>null</code> if they do not name their streams
+   */
+  @CheckForNull
+  private static List<AccurevTransaction> load( //
+      final AccurevSCM scm, //
+      final AccurevServer server, //
+      final EnvVars accurevEnv, //
+      final FilePath workspace, //
+      final TaskListener listener, //
+      final Launcher launcher, //
+      final Batch batch, //
+      final CompletableFuture<Void> loading, //
+      final long oldest, //
+      final Set<String> types)
+      throws IOException {
+    final String dateRange = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss").format(oldest);
+    listener.getLogger().println("Reading history of depot [" + scm.getDepot() + "]");
+    final long fetched = System.currentTimeMillis();
+    try {
+      final List<AccurevTransaction> transactions =
+          History.getTransactionsRange(
+              scm,
+              server,
+              accurevEnv,
+              workspace,
+              listener,
+              launcher,
+              null,
+              String.join(",", types),
+              dateRange);
+      final boolean attributed = transactions.stream().allMatch(t -> t.getStream() != null);
+      if (!attributed) {
+        LOGGER.fine("Depot history of " + scm.getDepot() + " does not name streams");
+      }
+      synchronized (batch) {
+        batch.transactions = transactions;
+        batch.types = types;
+        batch.from = oldest;
+        batch.fetched = fetched;
+        batch.attributed = attributed;
+      }
+      loading.complete(null);
+      return attributed ? transactions : null;
+    } catch (IOException | RuntimeException | Error e) {
+      loading.completeExceptionally(e);
+      throw e;
+    } finally {
+      synchronized (batch) {
+        batch.loading = null;
+      }
+    }
+  }
+
+  private static List<AccurevTransaction> select(
+      List<AccurevTransaction> transactions,
+      String stream,
+      Collection<String> transactionTypes,
+      long since) {
+    final List<AccurevTransaction> result = new ArrayList<>();
+    for (AccurevTransaction t : transactions) {
+      if (stream.equals(t.getStream())
+          && transactionTypes.contains(t.getAction())
+          && t.getDate().getTime() >= since) {
+        result.add(t);
+      }
+    }
+    return result;
+  }
+
+  private static void await(CompletableFuture<Void> loading, String depot) throws IOException {
+    try {
+      loading.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for the history of depot " + depot);
+    } catch (ExecutionException e) {
+      throw new IOException("Reading the history of depot " + depot + " failed", e.getCause());
+    }
+  }
+
+  /** Date a job polling the depot needed history from, when it polled, and what types it wants. */
+  private static final class Demand {
+
+    private final long from;
+    private final long polled;
+    private final Collection<String> types;
+
+    private Demand(long from, long polled, Collection<String> types) {
+      this.from = from;
+      this.polled = polled;
+      this.types = types;
+    }
+  }
+
+  private static final class Batch {
+
+    /** What each job polling this depot last needed. */
+    private final Map<AccurevSCM, Demand> demand = new WeakHashMap<>();
+
+    private List<AccurevTransaction> transactions;
+    private Set<String> types = Collections.emptySet();
+    private long from;
+    private long fetched;
+    private boolean attributed;
+    /** Read of the depot history in progress. */
+    private CompletableFuture<Void> loading;
+
+    private boolean covers(long since, long now, Collection<String> wanted) {
+      return transactions != null
+          && now - fetched < WINDOW
+          && from <= since
+          && types.containsAll(wanted);
+    }
+
+    /** @return the transactions of a stream, or <code>null</code> if streams are not named */
+    @CheckForNull
+    private List<AccurevTransaction> select(
+        String stream, Collection<String> transactionTypes, long since) {
+      return attributed
+          ? DepotPollingCoordinator.select(transactions, stream, transactionTypes, since)
+          : null;
+    }
+
+    private long oldestDemand(long now) {
+      long oldest = now;
+      for (Iterator<Demand> it = demand.values().iterator(); it.hasNext(); ) {
+        Demand d = it.next();
+        if (now - d.polled > DEMAND_WINDOW) {
+          it.remove();
+        } else {
+          oldest = Math.min(oldest, Math.max(d.from, now - MAX_LOOKBACK));
+        }
+      }
+      return oldest;
+    }
+
+    /** @return the transaction types any job still polling the depot wants */
+    private Set<String> demandedTypes() {
+      final Set<String> wanted = new LinkedHashSet<>();
+      for (Demand d : demand.values()) {
+        wanted.addAll(d.types);
+      }
+      return wanted;
+    }
+  }
+}
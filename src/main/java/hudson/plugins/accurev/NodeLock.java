@@ -0,0 +1,169 @@
+package hudson.plugins.accurev;
+
+import hudson.model.Node;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how many AccuRev commands run at once on a node.
+ *
+ * <p>Each {@link CommandClass} has its own limit, so that read-only queries may run side by side
+ * while workspace updates are kept apart. A login waits for every other command to finish and runs
+ * alone, as the client has been known to complain that it's not logged in if another client on the
+ * same machine logs in again.
+ */
+public final class NodeLock {
+
+  private static final Map<String, NodeLock> LOCKS = new ConcurrentHashMap<>();
+
+  /** Permits of {@link #gate}, one for every command that may run at once on the node. */
+  private static final int GATE_PERMITS =
+      CommandClass.QUERY.getLimit() + CommandClass.MUTATING.getLimit();
+
+  private final String nodeName;
+
+  /** Taken once by every command, and entirely by a login. */
+  private final Semaphore gate = new Semaphore(GATE_PERMITS, true);
+
+  private final Map<CommandClass, Semaphore> limits = new EnumMap<>(CommandClass.class);
+  private final Map<CommandClass, WaitStatistics> statistics = new EnumMap<>(CommandClass.class);
+
+  private NodeLock(String nodeName) {
+    this.nodeName = nodeName;
+    for (CommandClass commandClass : CommandClass.values()) {
+      limits.put(commandClass, new Semaphore(commandClass.getLimit(), true));
+      statistics.put(commandClass, new WaitStatistics());
+    }
+  }
+
+  /**
+   * Gets the lock of a node.
+   *
+   * @param node the node, <code>null</code> for the built-in node
+   * @return See above.
+   */
+  static NodeLock forNode(Node node) {
+    return forNodeName(node == null ? "" : node.getNodeName());
+  }
+
+  static NodeLock forNodeName(String nodeName) {
+    return LOCKS.computeIfAbsent(nodeName, NodeLock::new);
+  }
+
+  /**
+   * All locks created so far, by node name. The built-in node's name is the empty string.
+   *
+   * @return unmodifiable view of the locks
+   */
+  public static Map<String, NodeLock> getLocks() {
+    return Collections.unmodifiableMap(LOCKS);
+  }
+
+  /**
+   * Waits until a command of the given class may run, not giving up if interrupted.
+   *
+   * @param commandClass what the command does
+   */
+  public void lock(CommandClass commandClass) {
+    final long start = System.currentTimeMillis();
+    limits.get(commandClass).acquireUninterruptibly();
+    gate.acquireUninterruptibly(gatePermits(commandClass));
+    statistics.get(commandClass).waited(start);
+  }
+
+  /**
+   * Waits until a command of the given class may run.
+   *
+   * @param commandClass what the command does
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void lockInterruptibly(CommandClass commandClass) throws InterruptedException {
+    final long start = System.currentTimeMillis();
+    final Semaphore limit = limits.get(commandClass);
+    limit.acquire();
+    try {
+      gate.acquire(gatePermits(commandClass));
+    } catch (InterruptedException e) {
+      limit.release();
+      throw e;
+    }
+    statistics.get(commandClass).waited(start);
+  }
+
+  /**
+   * Lets the next command run once one of the given class has finished.
+   *
+   * @param commandClass what the command did, as passed to {@link #lock(CommandClass)}
+   */
+  public void unlock(CommandClass commandClass) {
+    gate.release(gatePermits(commandClass));
+    limits.get(commandClass).release();
+  }
+
+  private static int gatePermits(CommandClass commandClass) {
+    return commandClass == CommandClass.AUTH ? GATE_PERMITS : 1;
+  }
+
+  public String getNodeName() {
+    return nodeName;
+  }
+
+  /**
+   * @param commandClass what the commands do
+   * @return number of further commands of the class that could start now
+   */
+  public int getAvailablePermits(CommandClass commandClass) {
+    return Math.min(limits.get(commandClass).availablePermits(), gate.availablePermits());
+  }
+
+  /**
+   * @param commandClass what the commands do
+   * @return estimated number of commands of the class waiting to run
+   */
+  public int getQueueLength(CommandClass commandClass) {
+    return limits.get(commandClass).getQueueLength();
+  }
+
+  /**
+   * @param commandClass what the commands do
+   * @return number of commands of the class run since startup
+   */
+  public long getAcquiredCount(CommandClass commandClass) {
+    return statistics.get(commandClass).acquired.get();
+  }
+
+  /**
+   * @param commandClass what the commands do
+   * @return average time, in milliseconds, commands of the class waited to run
+   */
+  public long getAverageWaitMillis(CommandClass commandClass) {
+    final WaitStatistics stats = statistics.get(commandClass);
+    final long count = stats.acquired.get();
+    return count == 0 ? 0 : stats.totalWaitMillis.get() / count;
+  }
+
+  /**
+   * @param commandClass what the commands do
+   * @return longest time, in milliseconds, a command of the class waited to run
+   */
+  public long getMaxWaitMillis(CommandClass commandClass) {
+    return statistics.get(commandClass).maxWaitMillis.get();
+  }
+
+  private static final class WaitStatistics {
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+
+    private void waited(long start) {
+      final long waited = System.currentTimeMillis() - start;
+      acquired.incrementAndGet();
+      totalWaitMillis.addAndGet(waited);
+      maxWaitMillis.accumulateAndGet(waited, Math::max);
+    }
+  }
+}
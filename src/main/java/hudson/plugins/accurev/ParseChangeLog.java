@@ -6,7 +6,6 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.EnvVars;
 import hudson.model.Run;
 import hudson.model.TaskListener;
-import hudson.plugins.accurev.parsers.output.ParseOutputToFile;
 import hudson.plugins.accurev.parsers.xml.ParseUpdate;
 import hudson.scm.ChangeLogParser;
 import hudson.scm.ChangeLogSet;
@@ -22,14 +21,12 @@ import java.util.List;
 import java.util.StringTokenizer;
 import java.util.logging.Logger;
 import jenkins.plugins.accurev.util.AccurevUtils;
-import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOCase;
 import org.apache.commons.lang.StringUtils;
 import org.xml.sax.SAXException;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
-/** Parses a change log that was recorded by {@link ParseOutputToFile}. */
+/** Parses a change log that was recorded by {@link AccurevLauncher#runCommandToFile}. */
 public class ParseChangeLog extends ChangeLogParser {
 
   private static final Logger logger = Logger.getLogger(AccurevSCM.class.getName());
@@ -129,22 +126,13 @@ public class ParseChangeLog extends ChangeLogParser {
       subpaths.add(path);
     }
     logger.fine("subpaths size:" + subpaths.size());
+    final PathMatcher matcher = PathMatcher.compile(subpaths);
 
     for (AccurevTransaction transaction : transactions) {
-      boolean isValid = false;
-      for (Iterator<String> itr = transaction.getAffectedPaths().iterator(); itr.hasNext(); ) {
-        String path = itr.next();
-        logger.fine("rawPath:" + path);
-        String rawPath = path.substring(0, path.indexOf(' '));
-        for (String subpath : subpaths) {
-          if (FilenameUtils.wildcardMatch(rawPath, subpath, IOCase.INSENSITIVE)) {
-            isValid = true;
-            break;
-          } else {
-            isValid = false;
-          }
-        }
-        if (!isValid) {
+      for (Iterator<String> itr = transaction.getAffectedRawPaths().iterator(); itr.hasNext(); ) {
+        String rawPath = itr.next();
+        logger.fine("rawPath:" + rawPath);
+        if (!matcher.matches(rawPath)) {
           // if affected path dont match any of subpath filters, remove it from transaction.
           itr.remove();
         }
@@ -188,8 +176,7 @@ public class ParseChangeLog extends ChangeLogParser {
     boolean inVersion = false;
     String path = "";
     String realVersion = "";
-    String issueNum;
-    String affectedPathInfo;
+    String issueNum = null;
     boolean inConsolidatedChangeLog = false;
     boolean inUpdateLog = false;
     boolean inDepot = false;
@@ -230,7 +217,7 @@ public class ParseChangeLog extends ChangeLogParser {
             }
             inVersion = true;
             realVersion = parser.getAttributeValue("", "real");
-            // currentTransaction.addFileRevision("Version - "+realVersion);
+            issueNum = null;
 
           } else if ("issueNum".equalsIgnoreCase(tagName) && currentTransaction != null) {
             inIssueNum = true;
@@ -252,17 +239,13 @@ public class ParseChangeLog extends ChangeLogParser {
               && inVersion
               && inIssueNum
               && currentTransaction != null) {
-            affectedPathInfo = path + " --- " + "Version - " + realVersion;
-            currentTransaction.addAffectedPath(affectedPathInfo);
-            currentTransaction.addAffectedRawPath(path);
+            currentTransaction.addElement(path, realVersion, issueNum);
             inIssueNum = false;
             inVersion = false;
           } else if ("version".equalsIgnoreCase(endTagName)
               && inVersion
               && currentTransaction != null) {
-            affectedPathInfo = path + " --- " + "Version - " + realVersion;
-            currentTransaction.addAffectedPath(affectedPathInfo);
-            currentTransaction.addAffectedRawPath(path);
+            currentTransaction.addElement(path, realVersion, issueNum);
             inVersion = false;
           } else if ("comment".equalsIgnoreCase(endTagName)) {
             inComment = false;
@@ -0,0 +1,228 @@
+package hudson.plugins.accurev;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Case-insensitive wildcard matcher for a set of path patterns, compiled once so that each path is
+ * matched in about the time it takes to read it, whatever the number of patterns.
+ *
+ * <p>Patterns follow {@link org.apache.commons.io.FilenameUtils#wildcardMatch}: <code>*</code>
+ * matches any characters, slashes included, and <code>?</code> a single one. Patterns without
+ * wildcards are looked up in a set, <code>abc*</code> and <code>*abc</code> in tries, <code>
+ * *abc*</code> with {@link String#contains}, and the rest through one combined regular expression.
+ */
+public final class PathMatcher {
+
+  private static final PathMatcher EMPTY = new PathMatcher(Collections.emptyList());
+
+  private static final String STRIP_CHARS = " \t\n\r/";
+
+  private final boolean empty;
+  private final Set<String> literals = new HashSet<>();
+  private final Trie prefixes = new Trie();
+  private final Trie suffixes = new Trie();
+  private final List<String> contained = new ArrayList<>();
+  private final Pattern globs;
+
+  private PathMatcher(Collection<String> patterns) {
+    final List<String> regexes = new ArrayList<>();
+    boolean none = true;
+    for (String pattern : patterns) {
+      if (StringUtils.isEmpty(pattern)) {
+        continue;
+      }
+      none = false;
+      final String p = lower(sanitizeSlashes(pattern));
+      final int firstWildcard = StringUtils.indexOfAny(p, "*?");
+      if (firstWildcard < 0) {
+        literals.add(p);
+        continue;
+      }
+      final String inner = p.substring(1, Math.max(1, p.length() - 1));
+      if (firstWildcard == p.length() - 1 && p.endsWith("*")) {
+        prefixes.add(p.substring(0, p.length() - 1));
+      } else if (p.startsWith("*") && StringUtils.indexOfAny(p.substring(1), "*?") < 0) {
+        suffixes.add(new StringBuilder(p.substring(1)).reverse().toString());
+      } else if (p.length() > 1
+          && p.startsWith("*")
+          && p.endsWith("*")
+          && StringUtils.indexOfAny(inner, "*?") < 0) {
+        contained.add(inner);
+      } else {
+        regexes.add(toRegex(p));
+      }
+    }
+    empty = none;
+    globs = regexes.isEmpty() ? null : Pattern.compile(String.join("|", regexes), Pattern.DOTALL);
+  }
+
+  /**
+   * Compiles patterns.
+   *
+   * @param patterns patterns, may be <code>null</code>
+   * @return See above.
+   */
+  public static PathMatcher compile(Collection<String> patterns) {
+    if (patterns == null || patterns.isEmpty()) {
+      return EMPTY;
+    }
+    return new PathMatcher(patterns);
+  }
+
+  /**
+   * Compiles a comma separated list of polling filters, as configured on a job. Blanks and leading
+   * or trailing slashes around each filter are ignored, and backslashes are taken as slashes.
+   *
+   * @param filterList filters, may be <code>null</code>
+   * @return See above.
+   */
+  public static PathMatcher compileFilterList(String filterList) {
+    if (StringUtils.isBlank(filterList)) {
+      return EMPTY;
+    }
+    final String[] filters = StringUtils.split(sanitizeSlashes(filterList), ',');
+    return compile(Arrays.asList(StringUtils.stripAll(filters, STRIP_CHARS)));
+  }
+
+  /**
+   * Compiles a comma separated list of filters that each match any path containing them, as
+   * reference tree polling has always matched them. Backslashes are taken as slashes.
+   *
+   * @param filterList filters, may be <code>null</code>
+   * @return See above.
+   */
+  public static PathMatcher compileContainsList(String filterList) {
+    if (StringUtils.isBlank(filterList)) {
+      return EMPTY;
+    }
+    final List<String> patterns = new ArrayList<>();
+    for (String filter : StringUtils.split(filterList, ',')) {
+      final String f = filter.trim();
+      if (!f.isEmpty()) {
+        patterns.add("*" + f + "*");
+      }
+    }
+    return compile(patterns);
+  }
+
+  /** @return if there are no patterns */
+  public boolean isEmpty() {
+    return empty;
+  }
+
+  /**
+   * @param path path, with backslashes taken as slashes
+   * @return if the path matches any of the patterns
+   */
+  public boolean matches(String path) {
+    if (path == null || empty) {
+      return false;
+    }
+    final String p = lower(sanitizeSlashes(path));
+    if (literals.contains(p) || prefixes.matchesPrefixOf(p, false)) {
+      return true;
+    }
+    if (suffixes.matchesPrefixOf(p, true)) {
+      return true;
+    }
+    for (String c : contained) {
+      if (p.contains(c)) {
+        return true;
+      }
+    }
+    return globs != null && globs.matcher(p).matches();
+  }
+
+  /**
+   * @param paths paths
+   * @return if any of the paths matches any of the patterns
+   */
+  public boolean matchesAny(Collection<String> paths) {
+    if (empty) {
+      return false;
+    }
+    for (String path : paths) {
+      if (matches(path)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String lower(String s) {
+    return s.toLowerCase(Locale.ENGLISH);
+  }
+
+  private static String sanitizeSlashes(String input) {
+    return input.replace('\\', '/');
+  }
+
+  private static String toRegex(String glob) {
+    final StringBuilder regex = new StringBuilder("(?:");
+    int start = 0;
+    for (int i = 0; i < glob.length(); i++) {
+      final char c = glob.charAt(i);
+      if (c == '*' || c == '?') {
+        if (i > start) {
+          regex.append(Pattern.quote(glob.substring(start, i)));
+        }
+        regex.append(c == '*' ? ".*" : ".");
+        start = i + 1;
+      }
+    }
+    if (start < glob.length()) {
+      regex.append(Pattern.quote(glob.substring(start)));
+    }
+    return regex.append(')').toString();
+  }
+
+  /** Character trie telling whether a string starts with any of the strings added. */
+  private static final class Trie {
+
+    private final Node root = new Node();
+
+    void add(String s) {
+      Node node = root;
+      for (int i = 0; i < s.length(); i++) {
+        node = node.children.computeIfAbsent(s.charAt(i), c -> new Node());
+      }
+      node.terminal = true;
+    }
+
+    /**
+     * @param s string
+     * @param reversed whether to walk the string from its end, to match suffixes
+     * @return if the string starts (or ends) with any of the strings added
+     */
+    boolean matchesPrefixOf(String s, boolean reversed) {
+      Node node = root;
+      if (node.terminal) {
+        return true;
+      }
+      final int length = s.length();
+      for (int i = 0; i < length && node != null; i++) {
+        node = node.children.get(s.charAt(reversed ? length - 1 - i : i));
+        if (node != null && node.terminal) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static final class Node {
+    private final Map<Character, Node> children = new HashMap<>(4);
+    private boolean terminal;
+  }
+}
@@ -0,0 +1,250 @@
+package hudson.plugins.accurev;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.plugins.accurev.AccurevSCM.AccurevServer;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import org.apache.commons.lang.math.NumberUtils;
+
+/**
+ * Shared cache of the stream topology of a depot, as listed by <code>accurev show streams</code>.
+ *
+ * <p>Every job polling or building from the same depot needs the same list of streams, so it is
+ * fetched once per server and depot and reused until it expires or until a transaction that changes
+ * the topology (mkstream, chstream, defcomp) is seen.
+ */
+public final class StreamTopologyCache {
+
+  private static final Logger LOGGER = Logger.getLogger(StreamTopologyCache.class.getName());
+
+  /** How long, in seconds, a depot's stream topology is reused before being fetched again. */
+  private static final long TTL =
+      TimeUnit.SECONDS.toMillis(
+          SystemProperties.getLong(StreamTopologyCache.class.getName() + ".ttl", 300L));
+
+  private static final Map<String, Entry> CACHE = new ConcurrentHashMap<>();
+  private static final AtomicLong HITS = new AtomicLong();
+  private static final AtomicLong MISSES = new AtomicLong();
+
+  private StreamTopologyCache() {}
+
+  /**
+   * Gets the streams of a depot, loading them if they are not cached, have expired or do not
+   * contain the required stream. Only one caller loads a depot at a time, the others wait for its
+   * result without holding up lookups of what is already cached.
+   *
+   * @param server AccuRev server
+   * @param depot depot name
+   * @param nameOfStreamRequired stream that must be part of the topology, or <code>null</code>
+   * @param loader fetches the streams from the server on a cache miss
+   * @return a copy of the streams by name, which the caller may change, or <code>null</code> if
+   *     loading failed
+   * @throws IOException if the loader fails
+   */
+  @CheckForNull
+  public static Map<String, AccurevStream> getStreams(
+      AccurevServer server, String depot, String nameOfStreamRequired, Loader loader)
+      throws IOException {
+    final String key = key(server, depot);
+    final Entry entry = CACHE.computeIfAbsent(key, k -> new Entry());
+    while (true) {
+      final CompletableFuture<Map<String, AccurevStream>> loading;
+      final boolean loads;
+      final long generation;
+      synchronized (entry) {
+        if (entry.isValid(nameOfStreamRequired)) {
+          HITS.incrementAndGet();
+          LOGGER.fine("Stream topology cache hit for " + key);
+          return copyOf(entry.streams);
+        }
+        loads = entry.loading == null;
+        if (loads) {
+          MISSES.incrementAndGet();
+          LOGGER.fine("Stream topology cache miss for " + key);
+          entry.loading = new CompletableFuture<>();
+        }
+        loading = entry.loading;
+        generation = entry.generation;
+      }
+      if (loads) {
+        return load(entry, loading, generation, loader);
+      }
+      final Map<String, AccurevStream> streams = await(loading, key);
+      if (streams == null
+          || nameOfStreamRequired == null
+          || streams.containsKey(nameOfStreamRequired)) {
+        return copyOf(streams);
+      }
+      // loaded for another job, before the stream this one needs was made
+    }
+  }
+
+  /** Runs the loader outside the monitor of the entry, so only the waiters block on it. */
+  private static Map<String, AccurevStream> load(
+      Entry entry,
+      CompletableFuture<Map<String, AccurevStream>> loading,
+      long generation,
+      Loader loader)
+      throws IOException {
+    Map<String, AccurevStream> streams = null;
+    try {
+      streams = loader.load();
+    } catch (IOException | RuntimeException | Error e) {
+      loading.completeExceptionally(e);
+      throw e;
+    } finally {
+      synchronized (entry) {
+        entry.loading = null;
+        // a topology change seen while loading may not be part of what was loaded
+        if (!loading.isCompletedExceptionally() && entry.generation == generation) {
+          entry.streams = streams == null ? null : Collections.unmodifiableMap(streams);
+          entry.loaded = System.currentTimeMillis();
+        }
+      }
+    }
+    loading.complete(streams);
+    return copyOf(streams);
+  }
+
+  private static Map<String, AccurevStream> await(
+      CompletableFuture<Map<String, AccurevStream>> loading, String key) throws IOException {
+    try {
+      return loading.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for the streams of " + key);
+    } catch (ExecutionException e) {
+      throw new IOException("Loading the streams of " + key + " failed", e.getCause());
+    }
+  }
+
+  /**
+   * Copies streams, linked to the copies of their parents, so that one job changing the streams it
+   * got does not change those of the others.
+   */
+  @CheckForNull
+  private static Map<String, AccurevStream> copyOf(Map<String, AccurevStream> streams) {
+    if (streams == null) {
+      return null;
+    }
+    final Map<String, AccurevStream> copies = new HashMap<>();
+    streams.forEach((name, stream) -> copies.put(name, new AccurevStream(stream)));
+    streams.forEach(
+        (name, stream) -> {
+          if (stream.getParent() != null) {
+            copies.get(name).setParent(copies.get(stream.getParent().getName()));
+          }
+        });
+    return copies;
+  }
+
+  /**
+   * Gets the cached streams of a depot without loading them.
+   *
+   * @param server AccuRev server
+   * @param depot depot name
+   * @return a copy of the streams by name, or <code>null</code> if not cached
+   */
+  @CheckForNull
+  public static Map<String, AccurevStream> getCachedStreams(AccurevServer server, String depot) {
+    final Entry entry = CACHE.get(key(server, depot));
+    if (entry == null) {
+      return null;
+    }
+    synchronized (entry) {
+      return entry.isValid(null) ? copyOf(entry.streams) : null;
+    }
+  }
+
+  /**
+   * Invalidates the topology of a depot because a transaction changing it has been seen. Each
+   * transaction only invalidates the cache once, so jobs that keep seeing the same transaction
+   * until their next build do not keep refetching the depot.
+   *
+   * @param server AccuRev server
+   * @param depot depot name
+   * @param transactionId id of the mkstream, chstream or defcomp transaction
+   */
+  public static void invalidate(AccurevServer server, String depot, String transactionId) {
+    final long id = NumberUtils.toLong(transactionId, Long.MAX_VALUE);
+    final Entry entry = CACHE.get(key(server, depot));
+    if (entry == null) {
+      return;
+    }
+    synchronized (entry) {
+      if (id > entry.lastTopologyTransaction) {
+        if (id != Long.MAX_VALUE) {
+          entry.lastTopologyTransaction = id;
+        }
+        entry.streams = null;
+        entry.generation++;
+        LOGGER.log(
+            Level.FINE,
+            "Stream topology of {0} invalidated by transaction {1}",
+            new Object[] {depot, transactionId});
+      }
+    }
+  }
+
+  /** Drops every cached topology. */
+  public static void invalidateAll() {
+    CACHE.clear();
+  }
+
+  /**
+   * Number of lookups served from the cache.
+   *
+   * @return cache hits since startup
+   */
+  public static long getHitCount() {
+    return HITS.get();
+  }
+
+  /**
+   * Number of lookups that had to fetch the streams from the server.
+   *
+   * @return cache misses since startup
+   */
+  public static long getMissCount() {
+    return MISSES.get();
+  }
+
+  private static String key(AccurevServer server, String depot) {
+    return (server == null ? "" : server.getUuid()) + '/' + depot;
+  }
+
+  /** Fetches the streams of a depot from the AccuRev server. */
+  @FunctionalInterface
+  public interface Loader {
+
+    Map<String, AccurevStream> load() throws IOException;
+  }
+
+  private static final class Entry {
+
+    private Map<String, AccurevStream> streams;
+    private long loaded;
+    private long lastTopologyTransaction;
+    /** Counts the invalidations, so a load started before one does not undo it. */
+    private long generation;
+    /** Load in progress, which callers needing the streams wait for. */
+    private CompletableFuture<Map<String, AccurevStream>> loading;
+
+    private boolean isValid(String nameOfStreamRequired) {
+      return streams != null
+          && System.currentTimeMillis() - loaded < TTL
+          && (nameOfStreamRequired == null || streams.containsKey(nameOfStreamRequired));
+    }
+  }
+}
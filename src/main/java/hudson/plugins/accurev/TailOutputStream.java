@@ -0,0 +1,65 @@
+package hudson.plugins.accurev;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Keeps only the last bytes written to it, so the end of a command's output is still available for
+ * logging failures without holding the whole output in memory.
+ */
+final class TailOutputStream extends OutputStream {
+
+  private final byte[] buffer;
+  private int next;
+  private boolean wrapped;
+
+  /**
+   * @param capacity number of bytes kept
+   */
+  TailOutputStream(int capacity) {
+    buffer = new byte[capacity];
+  }
+
+  @Override
+  public synchronized void write(int b) {
+    buffer[next++] = (byte) b;
+    if (next == buffer.length) {
+      next = 0;
+      wrapped = true;
+    }
+  }
+
+  @Override
+  public synchronized void write(byte[] b, int off, int len) {
+    if (len >= buffer.length) {
+      System.arraycopy(b, off + len - buffer.length, buffer, 0, buffer.length);
+      next = 0;
+      wrapped = true;
+      return;
+    }
+    final int first = Math.min(len, buffer.length - next);
+    System.arraycopy(b, off, buffer, next, first);
+    System.arraycopy(b, off + first, buffer, 0, len - first);
+    next += len;
+    if (next >= buffer.length) {
+      next -= buffer.length;
+      wrapped = true;
+    }
+  }
+
+  /**
+   * Gets an {@link InputStream} over the bytes kept, oldest first.
+   *
+   * @return See above.
+   */
+  synchronized InputStream toInputStream() {
+    if (!wrapped) {
+      return new ByteArrayInputStream(buffer, 0, next);
+    }
+    final byte[] tail = new byte[buffer.length];
+    System.arraycopy(buffer, next, tail, 0, buffer.length - next);
+    System.arraycopy(buffer, 0, tail, buffer.length - next, next);
+    return new ByteArrayInputStream(tail);
+  }
+}
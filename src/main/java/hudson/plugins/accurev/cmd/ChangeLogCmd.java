@@ -9,31 +9,32 @@ import hudson.plugins.accurev.AccurevSCM;
 import hudson.plugins.accurev.AccurevSCM.AccurevServer;
 import hudson.plugins.accurev.GetConfigWebURL;
 import hudson.plugins.accurev.XmlParserFactory;
-import hudson.plugins.accurev.parsers.output.ParseOutputToFile;
+import hudson.plugins.accurev.parsers.output.ParseHistoryToChangeLog;
 import hudson.plugins.accurev.parsers.xml.ParseGetConfig;
 import hudson.util.ArgumentListBuilder;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
+import jenkins.util.SystemProperties;
+import org.apache.commons.lang.StringUtils;
 import org.xmlpull.v1.XmlPullParserFactory;
 
 public class ChangeLogCmd {
 
+  /** How long, in minutes, the web UI settings of a server are reused before being read again. */
+  private static final long WEB_URL_TTL =
+      TimeUnit.MINUTES.toMillis(
+          SystemProperties.getLong(ChangeLogCmd.class.getName() + ".webURLTtl", 60L));
+
+  private static final Map<String, CachedWebURL> WEB_URLS = new ConcurrentHashMap<>();
+
   public static boolean captureChangelog(
       AccurevServer server,
       EnvVars accurevEnv,
@@ -48,6 +49,35 @@ public class ChangeLogCmd {
       AccurevSCM scm,
       Map<String, GetConfigWebURL> webURL)
       throws IOException {
+    SimpleDateFormat formatter = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+    String dateRange = formatter.format(buildDate);
+    if (startDate != null) {
+      dateRange += "-" + formatter.format(startDate);
+    } else {
+      dateRange += ".100";
+    }
+    return captureHistory(
+        server,
+        accurevEnv,
+        workspace,
+        listener,
+        launcher,
+        dateRange,
+        stream,
+        changelogFile,
+        logger,
+        scm,
+        webURL);
+  }
+
+  /**
+   * Tells AccuRev not to fail history commands when the clocks of the client and server differ,
+   * unless the build already decided otherwise.
+   *
+   * @param accurevEnv Accurev Environment
+   * @param listener listener
+   */
+  public static void ignoreClockSync(EnvVars accurevEnv, TaskListener listener) {
     final String accurevACSYNCEnvVar = "AC_SYNC";
     if (!accurevEnv.containsKey(accurevACSYNCEnvVar)) {
       final String accurevACSYNC = "IGNORE";
@@ -56,6 +86,68 @@ public class ChangeLogCmd {
           .getLogger()
           .println("Setting " + accurevACSYNCEnvVar + " to \"" + accurevACSYNC + '"');
     }
+  }
+
+  /**
+   * Captures the changes of a stream from one transaction to another, both included.
+   *
+   * @param server Server
+   * @param accurevEnv Accurev Environment
+   * @param workspace Workspace
+   * @param listener listener
+   * @param launcher Launcher
+   * @param fromTransaction first transaction to capture
+   * @param toTransaction last transaction to capture
+   * @param stream stream
+   * @param changelogFile file the history is written to
+   * @param logger logger
+   * @param scm Accurev SCM
+   * @param webURL webURL
+   * @return if the changelog was captured
+   * @throws IOException Handle it above
+   */
+  public static boolean captureChangelog(
+      AccurevServer server,
+      EnvVars accurevEnv,
+      FilePath workspace,
+      TaskListener listener,
+      Launcher launcher,
+      long fromTransaction,
+      long toTransaction,
+      String stream,
+      File changelogFile,
+      Logger logger,
+      AccurevSCM scm,
+      Map<String, GetConfigWebURL> webURL)
+      throws IOException {
+    return captureHistory(
+        server,
+        accurevEnv,
+        workspace,
+        listener,
+        launcher,
+        toTransaction + "-" + fromTransaction,
+        stream,
+        changelogFile,
+        logger,
+        scm,
+        webURL);
+  }
+
+  private static boolean captureHistory(
+      AccurevServer server,
+      EnvVars accurevEnv,
+      FilePath workspace,
+      TaskListener listener,
+      Launcher launcher,
+      String timeSpec,
+      String stream,
+      File changelogFile,
+      Logger logger,
+      AccurevSCM scm,
+      Map<String, GetConfigWebURL> webURL)
+      throws IOException {
+    ignoreClockSync(accurevEnv, listener);
     ArgumentListBuilder cmd = new ArgumentListBuilder();
     cmd.add("hist");
     Command.addServer(cmd, server);
@@ -64,38 +156,50 @@ public class ChangeLogCmd {
     cmd.add("-s");
     cmd.add(stream);
     cmd.add("-t");
-    SimpleDateFormat formatter = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
-    String dateRange = formatter.format(buildDate);
-    if (startDate != null) {
-      dateRange += "-" + formatter.format(startDate);
+    cmd.add(timeSpec); // if this breaks windows there's going to be fun
+    final String commandDescription = "Changelog command";
+    final Boolean success;
+    if (webURL == null || webURL.isEmpty()) {
+      success =
+          AccurevLauncher.runCommandToFile(
+              commandDescription,
+              scm.getAccurevTool(),
+              launcher,
+              cmd,
+              scm.getOptionalLock(workspace),
+              accurevEnv,
+              workspace,
+              listener,
+              logger,
+              changelogFile);
     } else {
-      dateRange += ".100";
+      // add the depot and web UI URL to the changelog while it is being written
+      Boolean written = null;
+      try {
+        written =
+            AccurevLauncher.runStreamingCommand(
+                commandDescription,
+                scm.getAccurevTool(),
+                launcher,
+                cmd,
+                scm.getOptionalLock(workspace),
+                accurevEnv,
+                workspace,
+                listener,
+                logger,
+                new ParseHistoryToChangeLog(scm.getDepot(), getWebuiURL(webURL)),
+                changelogFile);
+      } finally {
+        // a failure is reported by throwing, and must not leave a truncated changelog behind
+        if (written == null || !written) {
+          Files.deleteIfExists(changelogFile.toPath());
+        }
+      }
+      success = written;
     }
-    cmd.add(dateRange); // if this breaks windows there's going to be fun
-    final String commandDescription = "Changelog command";
-    final Boolean success =
-        AccurevLauncher.runCommand(
-            commandDescription,
-            scm.getAccurevTool(),
-            launcher,
-            cmd,
-            scm.getOptionalLock(workspace),
-            accurevEnv,
-            workspace,
-            listener,
-            logger,
-            new ParseOutputToFile(),
-            changelogFile);
     if (success == null || !success) {
       return false;
     }
-    // ==============================================================================================
-    // See the content of changelogfile
-
-    if (changelogFile != null) {
-      applyWebURL(webURL, changelogFile, scm);
-    }
-    // =============================================================================================
     listener.getLogger().println("Changelog calculated successfully.");
     return true;
   }
@@ -122,6 +226,10 @@ public class ChangeLogCmd {
       Logger logger,
       AccurevSCM scm)
       throws IOException {
+    final CachedWebURL cached = WEB_URLS.get(server.getUuid());
+    if (cached != null && System.currentTimeMillis() - cached.retrieved < WEB_URL_TTL) {
+      return cached.webURL;
+    }
     final ArgumentListBuilder getConfigCmd = new ArgumentListBuilder();
     getConfigCmd.add("getconfig");
     Command.addServer(getConfigCmd, server);
@@ -132,78 +240,56 @@ public class ChangeLogCmd {
     if (parser == null) {
       throw new IOException("No XML Parser");
     }
-
-    return AccurevLauncher.runCommand(
-        "Get config to fetch webURL",
-        scm.getAccurevTool(),
-        launcher,
-        getConfigCmd,
-        scm.getOptionalLock(workspace),
-        accurevEnv,
-        workspace,
-        listener,
-        logger,
-        parser,
-        new ParseGetConfig(),
-        null);
+    final Map<String, GetConfigWebURL> webURL =
+        AccurevLauncher.runCommand(
+            "Get config to fetch webURL",
+            scm.getAccurevTool(),
+            launcher,
+            getConfigCmd,
+            scm.getOptionalLock(workspace),
+            accurevEnv,
+            workspace,
+            listener,
+            logger,
+            parser,
+            new ParseGetConfig(),
+            null);
+    if (webURL == null) {
+      return null;
+    }
+    final CachedWebURL retrieved = new CachedWebURL(Collections.unmodifiableMap(webURL));
+    WEB_URLS.put(server.getUuid(), retrieved);
+    return retrieved.webURL;
   }
 
   /**
-   * Parses changelog to apply the given webURL
+   * Forgets the web UI settings of a server, so they are retrieved again by the next build.
    *
-   * @param webURL webURL
-   * @param changelogFile changeLogFile
-   * @param scm Accurev SCM
+   * @param server Server
    */
-  private static void applyWebURL(
-      Map<String, GetConfigWebURL> webURL, File changelogFile, AccurevSCM scm) {
-
-    if (webURL == null || webURL.isEmpty()) {
-      return;
-    }
+  public static void refreshWebURL(AccurevServer server) {
+    WEB_URLS.remove(server.getUuid());
+  }
 
+  /**
+   * @param webURL webURL
+   * @return the web UI URL without trailing slash, or an empty string if not configured
+   */
+  private static String getWebuiURL(Map<String, GetConfigWebURL> webURL) {
     GetConfigWebURL webuiURL = webURL.get("webuiURL");
-    DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-    DocumentBuilder documentBuilder;
-    try {
-      documentBuilder = documentBuilderFactory.newDocumentBuilder();
-      Document document = documentBuilder.parse(changelogFile);
-
-      NodeList nodes = document.getElementsByTagName("transaction");
-
-      Element depotElement = document.createElement("depot");
-      if (nodes != null && nodes.getLength() > 0) {
-        nodes.item(0).getParentNode().insertBefore(depotElement, nodes.item(0));
-      }
-
-      depotElement.appendChild(document.createTextNode(scm.getDepot()));
-
-      Element webuiElement = document.createElement("webuiURL");
-      if (nodes != null && nodes.getLength() > 0) {
-        nodes.item(0).getParentNode().insertBefore(webuiElement, nodes.item(0));
-      }
-
-      if (webuiURL != null) {
-        webuiElement.appendChild(
-            document.createTextNode(
-                (webuiURL.getWebURL().endsWith("/")
-                    ? (webuiURL.getWebURL().substring(0, webuiURL.getWebURL().length() - 1))
-                    : (webuiURL.getWebURL()))));
-      } else {
-        webuiElement.appendChild(document.createTextNode(""));
-      }
+    if (webuiURL == null) {
+      return "";
+    }
+    return StringUtils.removeEnd(webuiURL.getWebURL(), "/");
+  }
 
-      DOMSource source = new DOMSource(document);
+  private static final class CachedWebURL {
 
-      TransformerFactory transformerFactory = TransformerFactory.newInstance();
-      Transformer transformer = transformerFactory.newTransformer();
-      StreamResult result = new StreamResult(changelogFile);
-      transformer.transform(source, result);
-    } catch (ParserConfigurationException
-        | IOException
-        | SAXException
-        | TransformerException ignored) {
+    private final Map<String, GetConfigWebURL> webURL;
+    private final long retrieved = System.currentTimeMillis();
 
+    private CachedWebURL(Map<String, GetConfigWebURL> webURL) {
+      this.webURL = webURL;
     }
   }
 }
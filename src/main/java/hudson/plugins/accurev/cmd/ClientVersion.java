@@ -0,0 +1,65 @@
+package hudson.plugins.accurev.cmd;
+
+import static jenkins.plugins.accurev.util.AccurevUtils.workspaceToNode;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.plugins.accurev.AccurevLauncher;
+import hudson.plugins.accurev.AccurevSCM;
+import hudson.plugins.accurev.parsers.output.ParseAccuRevVersion;
+import hudson.util.ArgumentListBuilder;
+import java.io.IOException;
+import java.util.logging.Logger;
+import jenkins.plugins.accurev.AccurevCapabilities;
+import jenkins.plugins.accurev.AccurevToolCache;
+
+public class ClientVersion extends Command {
+
+  private static final Logger logger = Logger.getLogger(ClientVersion.class.getName());
+
+  /**
+   * Gets what the AccuRev client of the node holding the workspace can do. The client is only asked
+   * for its version the first time, later calls are answered from {@link AccurevToolCache}.
+   *
+   * @return the capabilities, or <code>null</code> if the client did not report a version
+   */
+  @CheckForNull
+  public static AccurevCapabilities getCapabilities(
+      AccurevSCM scm,
+      Launcher launcher,
+      EnvVars accurevEnv,
+      FilePath workspace,
+      TaskListener listener)
+      throws IOException {
+    final String accurevTool = scm.getAccurevTool();
+    final Node node = workspaceToNode(workspace);
+    AccurevCapabilities capabilities = AccurevToolCache.getCapabilities(node, accurevTool);
+    if (capabilities != null) {
+      return capabilities;
+    }
+    // accurev without arguments prints its usage, which starts with the version
+    final String version =
+        AccurevLauncher.runCommand(
+            "Accurev version command",
+            accurevTool,
+            launcher,
+            new ArgumentListBuilder(),
+            null,
+            accurevEnv,
+            workspace,
+            listener,
+            logger,
+            new ParseAccuRevVersion(),
+            null);
+    capabilities = AccurevCapabilities.forVersion(version);
+    if (capabilities != null) {
+      logger.fine("AccuRev client version " + capabilities + " on " + node.getDisplayName());
+      AccurevToolCache.putCapabilities(node, accurevTool, capabilities);
+    }
+    return capabilities;
+  }
+}
@@ -2,6 +2,7 @@ package hudson.plugins.accurev.cmd;
 
 import hudson.plugins.accurev.AccurevSCM.AccurevServer;
 import hudson.util.ArgumentListBuilder;
+import java.util.List;
 import org.apache.commons.lang.StringUtils;
 
 public class Command {
@@ -13,13 +14,43 @@ public class Command {
    * @param server The Accurev server details.
    */
   public static void addServer(ArgumentListBuilder cmd, AccurevServer server) {
-    if (null != server && null != server.getHost() && StringUtils.isNotBlank(server.getHost())) {
+    final String address = getServerAddress(server);
+    if (!address.isEmpty()) {
       cmd.add("-H");
+      cmd.add(address);
+    }
+  }
+
+  /**
+   * Gets the server reference as passed to AccuRev.
+   *
+   * @param server The Accurev server details.
+   * @return <code>host:port</code>, or an empty string if no host is set, as {@link
+   *     #getServerAddress(ArgumentListBuilder)} finds it on the command line.
+   */
+  public static String getServerAddress(AccurevServer server) {
+    if (null != server && null != server.getHost() && StringUtils.isNotBlank(server.getHost())) {
       if (server.getPort() != 0) {
-        cmd.add(server.getHost() + ":" + server.getPort());
+        return server.getHost() + ":" + server.getPort();
       } else {
-        cmd.add(server.getHost());
+        return server.getHost();
       }
     }
+    return "";
+  }
+
+  /**
+   * Gets the server reference from an accurev command line.
+   *
+   * @param cmd The accurev command line.
+   * @return the argument of <code>-H</code>, or an empty string if there is none.
+   */
+  public static String getServerAddress(ArgumentListBuilder cmd) {
+    final List<String> args = cmd.toList();
+    final int host = args.indexOf("-H");
+    if (host >= 0 && host + 1 < args.size()) {
+      return args.get(host + 1);
+    }
+    return "";
   }
 }
@@ -28,7 +28,7 @@ public class History extends Command {
    * @param workspace workspace
    * @param listener listener
    * @param launcher launcher
-   * @param stream stream
+   * @param stream stream, or <code>null</code> for the latest transaction of the whole depot
    * @param transactionType Transaction type Specify what type of transaction to search for (can be
    *     null)
    * @return the latest transaction of the specified type from the selected stream
@@ -52,8 +52,10 @@ public class History extends Command {
     cmd.add("-fx");
     cmd.add("-p");
     cmd.add(scm.getDepot());
-    cmd.add("-s");
-    cmd.add(stream);
+    if (stream != null) {
+      cmd.add("-s");
+      cmd.add(stream);
+    }
     cmd.add("-t");
     cmd.add("now.1");
     if (transactionType != null) {
@@ -163,7 +165,7 @@ public class History extends Command {
    * @param workspace workspace
    * @param listener listener
    * @param launcher launcher
-   * @param stream stream
+   * @param stream stream, or <code>null</code> for the history of the whole depot
    * @param dateRange lastTransaction
    * @param transactionTypes
    * @return all the transaction for a given stream
@@ -180,25 +182,7 @@ public class History extends Command {
       final String transactionTypes,
       final String dateRange)
       throws IOException {
-    // initialize code that extracts the latest transaction of a certain
-    final ArgumentListBuilder cmd = new ArgumentListBuilder();
-    cmd.add("hist");
-    addServer(cmd, server);
-    cmd.add("-fx");
-    cmd.add("-p");
-    cmd.add(scm.getDepot());
-    cmd.add("-s");
-    cmd.add(stream);
-    // Filter the history command to get all the transactions between last build date and now
-    if (dateRange != null) {
-      cmd.add("-t");
-      cmd.add("now-" + (dateRange));
-    }
-
-    if (transactionTypes != null) {
-      cmd.add("-k");
-      cmd.add(transactionTypes);
-    }
+    final ArgumentListBuilder cmd = rangeCommand(scm, server, stream, transactionTypes, dateRange);
     // execute code that extracts the latest transaction
     XmlPullParserFactory parser = XmlParserFactory.getFactory();
     if (parser == null) {
@@ -224,4 +208,88 @@ public class History extends Command {
     }
     return transactions;
   }
+
+  /**
+   * As {@link #getTransactionsRange} but hands each transaction to a visitor as it is read, which
+   * can stop reading as soon as it has seen what it was looking for. The <code>hist</code> command
+   * is then ended without waiting for the rest of the history.
+   *
+   * @param scm Accurev SCM
+   * @param server server
+   * @param accurevEnv Accurev Enviroment
+   * @param workspace workspace
+   * @param listener listener
+   * @param launcher launcher
+   * @param stream stream, or <code>null</code> for the history of the whole depot
+   * @param transactionTypes transaction types, or <code>null</code> for all
+   * @param dateRange start of the range, a date or a transaction number
+   * @param visitor visitor
+   * @return <code>true</code> if the visitor stopped reading before the end of the history
+   * @throws IOException if the command failed
+   */
+  public static boolean visitTransactionsRange( //
+      final AccurevSCM scm, //
+      final AccurevServer server, //
+      final EnvVars accurevEnv, //
+      final FilePath workspace, //
+      final TaskListener listener, //
+      final Launcher launcher, //
+      final String stream,
+      final String transactionTypes,
+      final String dateRange,
+      final ParseHistory.Visitor visitor)
+      throws IOException {
+    final ArgumentListBuilder cmd = rangeCommand(scm, server, stream, transactionTypes, dateRange);
+    XmlPullParserFactory parser = XmlParserFactory.getFactory();
+    if (parser == null) {
+      throw new IOException("No XML Parser");
+    }
+    final Boolean stopped =
+        AccurevLauncher.runCommandUntilStopped(
+            "History command",
+            scm.getAccurevTool(),
+            launcher,
+            cmd,
+            scm.getOptionalLock(workspace),
+            accurevEnv,
+            workspace,
+            listener,
+            logger,
+            parser,
+            new ParseHistory()::visit,
+            visitor);
+    if (stopped == null) {
+      throw new IOException("History command failed when reading the transactions");
+    }
+    return stopped;
+  }
+
+  private static ArgumentListBuilder rangeCommand(
+      AccurevSCM scm,
+      AccurevServer server,
+      String stream,
+      String transactionTypes,
+      String dateRange) {
+    final ArgumentListBuilder cmd = new ArgumentListBuilder();
+    cmd.add("hist");
+    addServer(cmd, server);
+    cmd.add("-fx");
+    cmd.add("-p");
+    cmd.add(scm.getDepot());
+    if (stream != null) {
+      cmd.add("-s");
+      cmd.add(stream);
+    }
+    // Filter the history command to get all the transactions between last build date and now
+    if (dateRange != null) {
+      cmd.add("-t");
+      cmd.add("now-" + (dateRange));
+    }
+
+    if (transactionTypes != null) {
+      cmd.add("-k");
+      cmd.add(transactionTypes);
+    }
+    return cmd;
+  }
 }
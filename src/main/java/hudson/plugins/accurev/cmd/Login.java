@@ -1,18 +1,22 @@
 package hudson.plugins.accurev.cmd;
 
+import static jenkins.plugins.accurev.util.AccurevUtils.workspaceToNode;
+
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.model.Node;
 import hudson.model.TaskListener;
 import hudson.plugins.accurev.AccurevLauncher;
 import hudson.plugins.accurev.AccurevSCM;
 import hudson.plugins.accurev.AccurevSCM.AccurevServer;
+import hudson.plugins.accurev.CommandClass;
+import hudson.plugins.accurev.NodeLock;
 import hudson.plugins.accurev.parsers.output.ParseInfoToLoginName;
 import hudson.util.ArgumentListBuilder;
 import hudson.util.Secret;
 import java.io.IOException;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 import jenkins.model.Jenkins;
 import org.apache.commons.lang.StringUtils;
@@ -71,11 +75,19 @@ public class Login extends Command {
       listener.getLogger().println("Authentication failure - Username blank");
       return false;
     }
-    ReentrantLock lock =
+    final Node node = workspaceToNode(pathToRunCommandsIn);
+    if (LoginSessions.isLoggedIn(node, server, requiredUsername)) {
+      return true;
+    }
+    NodeLock lock =
         (scm == null) ? AccurevSCM.MASTER_LOCK : scm.getMandatoryLock(pathToRunCommandsIn);
-    lock.lock();
+    lock.lock(CommandClass.AUTH);
 
     try {
+      // another build on this node may have logged in while we waited
+      if (LoginSessions.isLoggedIn(node, server, requiredUsername)) {
+        return true;
+      }
       final boolean loginRequired;
       if (server.isMinimiseLogins()) {
         final String currentUsername =
@@ -97,11 +109,16 @@ public class Login extends Command {
         loginRequired = true;
       }
       if (loginRequired) {
-        return accurevLogin(
-            accurevTool, server, accurevEnv, pathToRunCommandsIn, listener, launcher);
+        // whatever the outcome, the session held so far has been ended
+        LoginSessions.invalidate(node, server);
+        if (!accurevLogin(
+            accurevTool, server, accurevEnv, pathToRunCommandsIn, listener, launcher)) {
+          return false;
+        }
       }
+      LoginSessions.loggedIn(node, server, requiredUsername);
     } finally {
-      lock.unlock();
+      lock.unlock(CommandClass.AUTH);
     }
     return true;
   }
@@ -165,6 +182,8 @@ public class Login extends Command {
     Launcher launcher = jenkins.createLauncher(listener);
     EnvVars accurevEnv = new EnvVars();
 
+    // always talk to the server, a remembered session would hide bad settings
+    LoginSessions.invalidate(jenkins, server);
     return ensureLoggedInToAccurev(
         null, server, accurevEnv, jenkins.getRootPath(), listener, launcher);
   }
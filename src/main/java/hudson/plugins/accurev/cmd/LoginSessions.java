@@ -0,0 +1,130 @@
+package hudson.plugins.accurev.cmd;
+
+import hudson.model.Node;
+import hudson.plugins.accurev.AccurevSCM.AccurevServer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+
+/**
+ * Remembers which nodes are logged in to which AccuRev servers, so that a login is only made when
+ * the previous session has expired or a command was refused for not being authenticated, rather
+ * than before every poll and checkout.
+ *
+ * <p>The client keeps one session per server for the user running it, so a node holds at most one
+ * session per server: logging in as another user ends the session of the previous one.
+ */
+public final class LoginSessions {
+
+  private static final Logger LOGGER = Logger.getLogger(LoginSessions.class.getName());
+
+  /**
+   * How long, in minutes, a session from a login that is not non-expiring is trusted. AccuRev's own
+   * session timeout defaults to 4 hours, this stays well within it.
+   */
+  private static final long TIMEOUT =
+      TimeUnit.MINUTES.toMillis(
+          SystemProperties.getLong(LoginSessions.class.getName() + ".timeout", 120L));
+
+  /**
+   * Fragments of AccuRev error messages caused by a missing or expired session. Other messages
+   * mention expired locks, licenses or elements, so expiry alone does not mean the session is gone.
+   */
+  private static final String[] AUTH_ERRORS = {
+    "not logged in",
+    "not currently logged in",
+    "not authenticated",
+    "session token expired",
+    "session token has expired",
+    "authentication failed",
+    "failed authentication"
+  };
+
+  /** Node and server to the session held. */
+  private static final Map<String, Session> SESSIONS = new ConcurrentHashMap<>();
+
+  private LoginSessions() {}
+
+  /**
+   * @param node node the commands run on
+   * @param server server
+   * @param username user that must be logged in
+   * @return if that user is known to be logged in to the server from the node
+   */
+  public static boolean isLoggedIn(Node node, AccurevServer server, String username) {
+    final Session session = SESSIONS.get(key(nodeName(node), Command.getServerAddress(server)));
+    return session != null
+        && session.username.equals(username)
+        && System.currentTimeMillis() < session.expiry;
+  }
+
+  /**
+   * Records a successful login, or that the user was found to be logged in already. Any session of
+   * another user with the server from the node is forgotten, as it has been replaced.
+   *
+   * @param node node the commands run on
+   * @param server server
+   * @param username user that is logged in
+   */
+  public static void loggedIn(Node node, AccurevServer server, String username) {
+    final long expiry =
+        server.isUseNonexpiringLogin() ? Long.MAX_VALUE : System.currentTimeMillis() + TIMEOUT;
+    SESSIONS.put(
+        key(nodeName(node), Command.getServerAddress(server)), new Session(username, expiry));
+  }
+
+  /**
+   * Forgets the session of a node with a server.
+   *
+   * @param node node the commands run on
+   * @param server server
+   */
+  public static void invalidate(Node node, AccurevServer server) {
+    SESSIONS.remove(key(nodeName(node), Command.getServerAddress(server)));
+  }
+
+  /**
+   * Forgets the session of a node with a server if a command failed because it was not
+   * authenticated.
+   *
+   * @param node node the command ran on
+   * @param serverAddress server as passed to the command with <code>-H</code>
+   * @param errorOutput what the command reported
+   */
+  public static void invalidateOnAuthError(Node node, String serverAddress, String errorOutput) {
+    if (errorOutput == null) {
+      return;
+    }
+    final String error = errorOutput.toLowerCase(Locale.ENGLISH);
+    for (String authError : AUTH_ERRORS) {
+      if (error.contains(authError)) {
+        LOGGER.fine("Session with " + serverAddress + " lost: " + authError);
+        SESSIONS.remove(key(nodeName(node), serverAddress));
+        return;
+      }
+    }
+  }
+
+  private static String nodeName(Node node) {
+    return node == null ? "" : node.getNodeName();
+  }
+
+  private static String key(String nodeName, String serverAddress) {
+    return nodeName + '|' + serverAddress;
+  }
+
+  private static final class Session {
+
+    private final String username;
+    /** Time the session is no longer trusted. */
+    private final long expiry;
+
+    private Session(String username, long expiry) {
+      this.username = username;
+      this.expiry = expiry;
+    }
+  }
+}
@@ -9,13 +9,14 @@ import hudson.plugins.accurev.AccurevLauncher;
 import hudson.plugins.accurev.AccurevSCM;
 import hudson.plugins.accurev.AccurevSCM.AccurevServer;
 import hudson.plugins.accurev.AccurevStream;
+import hudson.plugins.accurev.NodeLock;
+import hudson.plugins.accurev.StreamTopologyCache;
 import hudson.plugins.accurev.XmlParserFactory;
 import hudson.plugins.accurev.parsers.xml.ParseShowStreams;
 import hudson.util.ArgumentListBuilder;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 import org.xmlpull.v1.XmlPullParserFactory;
 
@@ -42,15 +43,20 @@ public class ShowStreams extends Command {
               nameOfStreamRequired, scm, accurevEnv, workspace, listener, launcher);
     } else {
       streams =
-          getAllStreams(
-              scm,
+          StreamTopologyCache.getStreams(
               server,
               scm.getDepot(),
-              scm.getOptionalLock(workspace),
-              accurevEnv,
-              workspace,
-              listener,
-              launcher);
+              nameOfStreamRequired,
+              () ->
+                  getAllStreams(
+                      scm,
+                      server,
+                      scm.getDepot(),
+                      scm.getOptionalLock(workspace),
+                      accurevEnv,
+                      workspace,
+                      listener,
+                      launcher));
     }
     return streams;
   }
@@ -59,7 +65,7 @@ public class ShowStreams extends Command {
       AccurevSCM scm,
       final AccurevServer server, //
       final String depot, //
-      final ReentrantLock lock, //
+      final NodeLock lock, //
       final EnvVars accurevEnv, //
       final FilePath workspace, //
       final TaskListener listener, //
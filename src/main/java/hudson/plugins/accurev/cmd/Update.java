@@ -6,15 +6,13 @@ import hudson.Launcher;
 import hudson.model.TaskListener;
 import hudson.plugins.accurev.AccurevLauncher;
 import hudson.plugins.accurev.AccurevSCM;
+import hudson.plugins.accurev.PathMatcher;
 import hudson.plugins.accurev.XmlParserFactory;
-import hudson.plugins.accurev.parsers.output.ParseOutputToFile;
 import hudson.plugins.accurev.parsers.xml.ParseUpdate;
 import hudson.util.ArgumentListBuilder;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
 import java.util.List;
 import java.util.logging.Logger;
 import org.xmlpull.v1.XmlPullParserFactory;
@@ -23,7 +21,6 @@ import org.xmlpull.v1.XmlPullParserFactory;
 public class Update extends Command {
 
   private static final Logger logger = Logger.getLogger(Update.class.getName());
-  private static final String FFPSCM_DELIM = ",";
 
   private static ArgumentListBuilder createCommand(
       final AccurevSCM.AccurevServer server, //
@@ -79,34 +76,9 @@ public class Update extends Command {
             new ParseUpdate(),
             files);
     if (transactionFound != null && transactionFound) {
-      String filterForPollSCM = scm.getFilterForPollSCM();
-      String subPath = scm.getSubPath();
-      Collection<String> filterPaths = null;
-      String filterList = null;
-      if (filterForPollSCM != null && !(filterForPollSCM.isEmpty())) {
-        filterList = filterForPollSCM;
-      } else if (subPath != null && !(subPath.isEmpty())) {
-        filterList = subPath;
-      }
-
-      if (filterList != null && !filterList.isEmpty()) {
-        filterList = filterList.replace(", ", ",");
-        filterPaths = new ArrayList<>(Arrays.asList(filterList.split(FFPSCM_DELIM)));
-      }
-
-      if (filterPaths != null) {
-        transactionFound = false;
-        for (String Filter_For_Poll_SCM1 : filterPaths) {
-          for (String file : files) {
-            if (file.contains(Filter_For_Poll_SCM1)) {
-              transactionFound = true;
-              break;
-            }
-          }
-          if (transactionFound) {
-            break;
-          }
-        }
+      final PathMatcher filter = scm.getUpdateFilterMatcher();
+      if (!filter.isEmpty()) {
+        transactionFound = filter.matchesAny(files);
       }
     } else {
       return false;
@@ -126,7 +98,7 @@ public class Update extends Command {
       throws IOException {
     final ArgumentListBuilder cmd = createCommand(server, false, reftree, false);
     final Boolean result =
-        AccurevLauncher.runCommand(
+        AccurevLauncher.runCommandToFile(
             "Update command",
             scm.getAccurevTool(),
             launcher,
@@ -136,7 +108,6 @@ public class Update extends Command {
             workspace,
             listener,
             logger,
-            new ParseOutputToFile(),
             changelogFile);
     if (result == null) {
       return false;
@@ -5,18 +5,20 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Util;
 import hudson.model.Job;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.plugins.accurev.AccuRevHiddenParametersAction;
 import hudson.plugins.accurev.AccurevElement;
-import hudson.plugins.accurev.AccurevLauncher;
+import hudson.plugins.accurev.AccurevRevisionState;
 import hudson.plugins.accurev.AccurevSCM;
 import hudson.plugins.accurev.AccurevStream;
 import hudson.plugins.accurev.AccurevTransaction;
 import hudson.plugins.accurev.GetConfigWebURL;
 import hudson.plugins.accurev.XmlConsolidateStreamChangeLog;
 import hudson.plugins.accurev.cmd.ChangeLogCmd;
+import hudson.plugins.accurev.cmd.ClientVersion;
 import hudson.plugins.accurev.cmd.FilesCmd;
 import hudson.plugins.accurev.cmd.History;
 import hudson.plugins.accurev.cmd.Login;
@@ -24,10 +26,8 @@ import hudson.plugins.accurev.cmd.PopulateCmd;
 import hudson.plugins.accurev.cmd.SetProperty;
 import hudson.plugins.accurev.cmd.ShowStreams;
 import hudson.plugins.accurev.cmd.Synctime;
-import hudson.plugins.accurev.parsers.output.ParseAccuRevVersion;
 import hudson.scm.PollingResult;
 import hudson.scm.SCMRevisionState;
-import hudson.util.ArgumentListBuilder;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -38,12 +38,16 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.model.Jenkins;
+import jenkins.plugins.accurev.AccurevCapabilities;
+import jenkins.plugins.accurev.util.ParallelUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
 
@@ -72,6 +76,10 @@ public abstract class AbstractModeDelegate {
   protected FilePath accurevWorkingSpace;
   protected String localStream;
   protected Date startDateOfPopulate;
+  protected SCMRevisionState baseline;
+  private long fromTransaction;
+  private long toTransaction;
+  private final Map<String, Long> latestTransactions = new LinkedHashMap<>();
 
   public AbstractModeDelegate(AccurevSCM scm) {
     this.scm = scm;
@@ -82,15 +90,19 @@ public abstract class AbstractModeDelegate {
    *
    * @param job Jenkins job
    * @param previous used to set the last Transaction
+   * @param depot depot the transaction was made in, as transaction numbers are per depot
    * @throws IOException Failing to read file
    */
-  public static void setLastTransaction(Job<?, ?> job, String previous) throws IOException {
+  public static void setLastTransaction(Job<?, ?> job, String previous, String depot)
+      throws IOException {
     if (job == null) {
       throw new IOException("Job is null");
     }
     File f = new File(job.getRootDir(), ACCUREVLASTTRANSFILENAME);
     try (BufferedWriter br = Files.newBufferedWriter(f.toPath(), UTF_8)) {
       br.write(previous);
+      br.newLine();
+      br.write(Util.fixNull(depot));
     }
   }
 
@@ -145,6 +157,7 @@ public abstract class AbstractModeDelegate {
     }
     listener.getLogger().println("Running commands from folder \"" + jenkinsWorkspace + '"');
     setup(launcher, jenkinsWorkspace, listener);
+    baseline = state;
 
     return checkForChanges(project);
   }
@@ -196,6 +209,16 @@ public abstract class AbstractModeDelegate {
       setStreamColor();
     }
 
+    // Read before the workspace is brought up to date: a promote landing meanwhile must not be
+    // recorded as built, or the next poll would never see it
+    AccurevTransaction latestTransaction = null;
+    try {
+      latestTransaction = getLatestTransactionFromStreams(streams);
+    } catch (Exception e) {
+      listener.error("There was a problem getting the latest transaction info from the stream.");
+      e.printStackTrace(listener.getLogger());
+    }
+
     boolean isSuccess = true;
     String errorMessage = "Failed to";
     if (!checkout(build, changelogFile)) {
@@ -208,7 +231,9 @@ public abstract class AbstractModeDelegate {
       isSuccess = false;
     }
 
-    if (isSuccess && changelogFile != null && !captureChangeLog(build, changelogFile, streams)) {
+    if (isSuccess
+        && changelogFile != null
+        && !captureChangeLog(build, changelogFile, streams, latestTransaction)) {
       errorMessage += " CaptureChangeLog";
       isSuccess = false;
     }
@@ -221,9 +246,16 @@ public abstract class AbstractModeDelegate {
   }
 
   private boolean captureChangeLog(
-      Run<?, ?> build, File changelogFile, Map<String, AccurevStream> streams) throws IOException {
+      Run<?, ?> build,
+      File changelogFile,
+      Map<String, AccurevStream> streams,
+      AccurevTransaction latestTransaction)
+      throws IOException, InterruptedException {
+    // read before it gets overwritten with the latest transaction below
+    final long previousTransaction =
+        build == null ? 0 : NumberUtils.toLong(getLastBuildTransaction(build), 0);
+    long latestTransactionNumber = 0;
     try {
-      AccurevTransaction latestTransaction = getLatestTransactionFromStreams(streams);
       if (latestTransaction == null) {
         throw new NullPointerException(
             "The 'hist' command did not return a transaction. Does this stream have any history yet?");
@@ -237,7 +269,8 @@ public abstract class AbstractModeDelegate {
       EnvVars envVars = new EnvVars();
       envVars.put(ACCUREV_LATEST_TRANSACTION_ID, latestTransactionID);
       envVars.put(ACCUREV_LATEST_TRANSACTION_DATE, latestTransactionDate);
-      setLastTransaction(build.getParent(), latestTransactionID);
+      setLastTransaction(build.getParent(), latestTransactionID, scm.getDepot());
+      latestTransactionNumber = NumberUtils.toLong(latestTransactionID, 0);
       build.addAction(new AccuRevHiddenParametersAction(envVars));
 
     } catch (Exception e) {
@@ -265,25 +298,29 @@ public abstract class AbstractModeDelegate {
       startTime = c;
     }
 
+    if (previousTransaction > 0 && latestTransactionNumber >= previousTransaction) {
+      // capture exactly the transactions made since the previous build
+      fromTransaction = previousTransaction + 1;
+      toTransaction = latestTransactionNumber;
+      if (fromTransaction > toTransaction) {
+        listener.getLogger().println("No transactions since " + previousTransaction);
+        XmlConsolidateStreamChangeLog.createChangeLog(
+            new ArrayList<>(), changelogFile, getUpdateFileName());
+        return true;
+      }
+      listener
+          .getLogger()
+          .println("Capturing transactions " + fromTransaction + " to " + toTransaction);
+    }
+
     Map<String, GetConfigWebURL> webURL =
         ChangeLogCmd.retrieveWebURL(
             server, accurevEnv, accurevWorkingSpace, listener, launcher, logger, scm);
     AccurevStream stream = streams == null ? null : streams.get(localStream);
     if (stream == null) {
       // if there was a problem, fall back to simple stream check
-      return ChangeLogCmd.captureChangelog(
-          server,
-          accurevEnv,
-          accurevWorkingSpace,
-          listener,
-          launcher,
-          startDateOfPopulate,
-          startTime.getTime(),
-          localStream,
-          changelogFile,
-          logger,
-          scm,
-          webURL);
+      return captureStreamChangelog(
+          accurevEnv, localStream, changelogFile, startTime.getTime(), webURL);
     }
 
     // Too confusing reading it
@@ -292,21 +329,51 @@ public abstract class AbstractModeDelegate {
     // Doing too much in too few lines to make it apparant
     // High potential for simple rewrite!
     if (!getChangesFromStreams(startTime, stream, changelogFile, webURL)) {
+      return captureStreamChangelog(
+          accurevEnv, localStream, changelogFile, startTime.getTime(), webURL);
+    }
+    return true;
+  }
+
+  /**
+   * Captures the history of one stream, by transaction number when the range since the previous
+   * build is known and by date otherwise.
+   */
+  private boolean captureStreamChangelog(
+      EnvVars env,
+      String streamName,
+      File changelogFile,
+      Date startTime,
+      Map<String, GetConfigWebURL> webURL)
+      throws IOException {
+    if (fromTransaction > 0) {
       return ChangeLogCmd.captureChangelog(
           server,
-          accurevEnv,
+          env,
           accurevWorkingSpace,
           listener,
           launcher,
-          startDateOfPopulate,
-          startTime.getTime(),
-          localStream,
+          fromTransaction,
+          toTransaction,
+          streamName,
           changelogFile,
           logger,
           scm,
           webURL);
     }
-    return true;
+    return ChangeLogCmd.captureChangelog(
+        server,
+        env,
+        accurevWorkingSpace,
+        listener,
+        launcher,
+        startDateOfPopulate,
+        startTime,
+        streamName,
+        changelogFile,
+        logger,
+        scm,
+        webURL);
   }
 
   protected String getChangeLogStream() {
@@ -318,67 +385,94 @@ public abstract class AbstractModeDelegate {
       AccurevStream stream,
       File changelogFile,
       Map<String, GetConfigWebURL> webURL)
-      throws IOException {
-    List<String> changedStreams = new ArrayList<>();
+      throws IOException, InterruptedException {
     // Capture changes in all streams and parents
-    boolean capturedChangelog;
-    do {
-      File streamChangeLog =
-          XmlConsolidateStreamChangeLog.getStreamChangeLogFile(changelogFile, stream);
-      capturedChangelog =
-          ChangeLogCmd.captureChangelog(
-              server,
-              accurevEnv,
-              accurevWorkingSpace,
-              listener,
-              launcher,
-              startDateOfPopulate,
-              startTime == null ? null : startTime.getTime(),
-              stream.getName(),
-              streamChangeLog,
-              logger,
-              scm,
-              webURL);
-      if (capturedChangelog) {
-        changedStreams.add(streamChangeLog.getName());
-      }
-      stream = stream.getParent();
-    } while (stream != null
+    final List<AccurevStream> hierarchy = new ArrayList<>();
+    hierarchy.add(stream);
+    stream = stream.getParent();
+    while (stream != null
         && stream.isReceivingChangesFromParent()
-        && capturedChangelog
         && startTime != null
-        && !scm.isIgnoreStreamParent());
+        && !scm.isIgnoreStreamParent()) {
+      hierarchy.add(stream);
+      stream = stream.getParent();
+    }
+
+    // Each command gets its own environment as running a command modifies it
+    ChangeLogCmd.ignoreClockSync(accurevEnv, listener);
+    final List<Callable<Boolean>> captures = new ArrayList<>();
+    for (final AccurevStream s : hierarchy) {
+      final File streamChangeLog =
+          XmlConsolidateStreamChangeLog.getStreamChangeLogFile(changelogFile, s);
+      final EnvVars env = new EnvVars(accurevEnv);
+      captures.add(
+          () ->
+              captureStreamChangelog(
+                  env,
+                  s.getName(),
+                  streamChangeLog,
+                  startTime == null ? null : startTime.getTime(),
+                  webURL));
+    }
+    final List<Boolean> captured = ParallelUtils.invokeAll(captures);
+
+    // Keep the streams up to the first one that failed, as if captured one after the other
+    List<String> changedStreams = new ArrayList<>();
+    boolean capturedChangelog = true;
+    for (int i = 0; i < hierarchy.size() && capturedChangelog; i++) {
+      capturedChangelog = captured.get(i);
+      if (capturedChangelog) {
+        changedStreams.add(
+            XmlConsolidateStreamChangeLog.getStreamChangeLogFile(changelogFile, hierarchy.get(i))
+                .getName());
+      }
+    }
 
     XmlConsolidateStreamChangeLog.createChangeLog(
         changedStreams, changelogFile, getUpdateFileName());
     return capturedChangelog;
   }
 
+  /**
+   * Looks up the latest transaction of every stream the build gets changes from, and remembers
+   * them for {@link #getRevisionState()}.
+   */
   private AccurevTransaction getLatestTransactionFromStreams(Map<String, AccurevStream> streams)
       throws Exception {
-    AccurevTransaction transaction = null;
+    final List<String> streamNames = new ArrayList<>();
+    final List<Callable<AccurevTransaction>> lookups = new ArrayList<>();
     AccurevStream stream = streams.get(getChangeLogStream());
     do {
-      AccurevTransaction other =
-          History.getLatestTransaction(
-              scm,
-              server,
-              accurevEnv,
-              accurevWorkingSpace,
-              listener,
-              launcher,
-              stream.getName(),
-              null);
-      if (null == transaction && null != other) {
-        transaction = other;
-      } else if ((null != transaction && null != other)
-          && Integer.parseInt(other.getId()) > Integer.parseInt(transaction.getId())) {
-        transaction = other;
-      }
+      // Each command gets its own environment as running a command modifies it
+      final String streamName = stream.getName();
+      final EnvVars env = new EnvVars(accurevEnv);
+      streamNames.add(streamName);
+      lookups.add(
+          () ->
+              History.getLatestTransaction(
+                  scm, server, env, accurevWorkingSpace, listener, launcher, streamName, null));
       stream = stream.getParent();
     } while (stream != null
         && stream.isReceivingChangesFromParent()
         && !scm.isIgnoreStreamParent());
+
+    AccurevTransaction transaction = null;
+    long transactionId = 0;
+    final List<AccurevTransaction> latest = ParallelUtils.invokeAll(lookups);
+    latestTransactions.clear();
+    for (int i = 0; i < latest.size(); i++) {
+      final AccurevTransaction other = latest.get(i);
+      if (other == null) {
+        latestTransactions.put(streamNames.get(i), 0L);
+        continue;
+      }
+      final long otherId = Long.parseLong(other.getId());
+      latestTransactions.put(streamNames.get(i), otherId);
+      if (null == transaction || otherId > transactionId) {
+        transaction = other;
+        transactionId = otherId;
+      }
+    }
     return transaction;
   }
 
@@ -386,6 +480,18 @@ public abstract class AbstractModeDelegate {
     return accurevEnv;
   }
 
+  /**
+   * Gets the highest transaction of each stream found by the last checkout, to poll against.
+   *
+   * @return See above, or <code>null</code> if they could not be found.
+   */
+  public AccurevRevisionState getRevisionState() {
+    if (latestTransactions.isEmpty()) {
+      return null;
+    }
+    return new AccurevRevisionState(latestTransactions);
+  }
+
   protected String getUpdateFileName() {
     return null;
   }
@@ -415,20 +521,12 @@ public abstract class AbstractModeDelegate {
 
   private void setStreamColor() throws IOException {
     if (isSteamColorEnabled()) {
-      final ArgumentListBuilder cmd = new ArgumentListBuilder();
-      String ACCUREV_VERSION =
-          AccurevLauncher.runCommand(
-              "Accurev version",
-              scm.getAccurevTool(),
-              launcher,
-              cmd,
-              null,
-              accurevEnv,
-              jenkinsWorkspace,
-              listener,
-              logger,
-              new ParseAccuRevVersion(),
-              null);
+      final AccurevCapabilities capabilities =
+          ClientVersion.getCapabilities(scm, launcher, accurevEnv, jenkinsWorkspace, listener);
+      if (capabilities == null) {
+        listener.getLogger().println("Could not determine the AccuRev client version");
+        return;
+      }
       SetProperty.setproperty(
           scm,
           accurevWorkingSpace,
@@ -438,7 +536,7 @@ public abstract class AbstractModeDelegate {
           server,
           getStreamColorStream(),
           getStreamColor(),
-          getStreamTypeParameter(ACCUREV_VERSION));
+          capabilities.getStreamStyleProperty());
     }
   }
 
@@ -557,39 +655,32 @@ public abstract class AbstractModeDelegate {
     // override to put implementation specific values
   }
 
-  /**
-   * get color type parameter from the AccuRev Version If version less than 6 or equal to 6.0.x the
-   * color parameter will be style if version greater than 6 like 6.1.x or 7 then color parameter
-   * will streamStyle
-   *
-   * @param version
-   * @return String
-   */
-  private String getStreamTypeParameter(String version) {
-    String[] versionSplits = version.split("\\.");
-    String type =
-        ((Integer.parseInt(versionSplits[0]) < 6)
-                || (Integer.parseInt(versionSplits[0]) == 6
-                    && Integer.parseInt(versionSplits[1]) < 1))
-            ? "style"
-            : "streamStyle";
-    logger.info("Current AccuRev version " + version + " color type parameter " + type);
-    return type;
-  }
-
   /**
    * Get last transaction build from the jenkins for the currently running project
    *
    * @return String
    * @throws IOException Failing to read file
    */
+  /**
+   * @return the last transaction built, or <code>null</code> if it is not known or was made in
+   *     another depot than the one now configured
+   */
   private String getLastBuildTransaction(Run<?, ?> build) throws IOException {
     File f = new File(build.getParent().getRootDir(), ACCUREVLASTTRANSFILENAME);
     if (!f.exists()) {
       return null;
     }
     try (BufferedReader br = Files.newBufferedReader(f.toPath(), UTF_8)) {
-      return br.readLine();
+      final String transaction = br.readLine();
+      // files written before the depot was recorded only hold the transaction
+      final String depot = br.readLine();
+      if (depot != null && !depot.equals(Util.fixNull(scm.getDepot()))) {
+        listener
+            .getLogger()
+            .println("Last build was made from depot " + depot + ", ignoring its transaction");
+        return null;
+      }
+      return transaction;
     }
   }
 
@@ -1,20 +1,25 @@
 package hudson.plugins.accurev.delegates;
 
+import hudson.EnvVars;
 import hudson.model.Job;
 import hudson.model.Run;
-import hudson.plugins.accurev.AccurevLauncher;
+import hudson.plugins.accurev.AccurevRevisionState;
 import hudson.plugins.accurev.AccurevSCM;
 import hudson.plugins.accurev.AccurevStream;
 import hudson.plugins.accurev.CheckForChanges;
+import hudson.plugins.accurev.cmd.ClientVersion;
 import hudson.plugins.accurev.cmd.ShowStreams;
-import hudson.plugins.accurev.parsers.output.ParseAccuRevVersion;
 import hudson.scm.PollingResult;
-import hudson.util.ArgumentListBuilder;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.logging.Logger;
+import jenkins.plugins.accurev.AccurevCapabilities;
+import jenkins.plugins.accurev.util.ParallelUtils;
 
 /** @author raymond */
 public class StreamDelegate extends AbstractModeDelegate {
@@ -88,51 +93,140 @@ public class StreamDelegate extends AbstractModeDelegate {
           .println("Tried to find '" + localStream + "' Stream, could not found it.");
       return PollingResult.NO_CHANGES;
     }
-    // command to get version of accurev
-    final ArgumentListBuilder cmd = new ArgumentListBuilder();
-    String ACCUREV_VERSION =
-        AccurevLauncher.runCommand(
-            "Accurev version command",
-            scm.getAccurevTool(),
-            launcher,
-            cmd,
-            null,
-            accurevEnv,
-            jenkinsWorkspace,
-            listener,
-            logger,
-            new ParseAccuRevVersion(),
-            null);
-    listener
-        .getLogger()
-        .println( //
-            "Accurev Client Version: " + ACCUREV_VERSION);
-    int version = Integer.parseInt(ACCUREV_VERSION.substring(0, ACCUREV_VERSION.indexOf(".")));
-    if (version < 7) {
-      listener
-          .getLogger()
-          .println( //
-              "Upgrade AccuRev Client for improved performance");
+    final List<AccurevStream> hierarchy = getHierarchy(stream);
+    if (baseline instanceof AccurevRevisionState
+        && isCoveredBy((AccurevRevisionState) baseline, hierarchy)) {
+      return checkForChangesSince((AccurevRevisionState) baseline, hierarchy);
+    }
+    final AccurevCapabilities capabilities =
+        ClientVersion.getCapabilities(scm, launcher, accurevEnv, jenkinsWorkspace, listener);
+    final boolean combinedHistory = capabilities != null && capabilities.isCombinedHistory();
+    if (capabilities == null) {
+      // checking each transaction type on its own works with any client
+      listener.getLogger().println("Could not determine the AccuRev client version");
+    } else {
+      listener.getLogger().println("Accurev Client Version: " + capabilities);
+      if (!combinedHistory) {
+        listener
+            .getLogger()
+            .println( //
+                "Upgrade AccuRev Client for improved performance");
+      }
     }
+    final int version = capabilities == null ? 0 : capabilities.getMajorVersion();
     // There may be changes in a parent stream that we need to factor in.
-    do {
-      if (CheckForChanges.checkStreamForChanges(
-          server,
-          accurevEnv,
-          jenkinsWorkspace,
-          listener,
-          launcher,
-          stream,
-          buildDate,
-          logger,
-          scm,
-          version)) {
-        return PollingResult.BUILD_NOW;
+    if (hierarchy.size() > 1 && combinedHistory && !server.isUseBatchPolling()) {
+      final Boolean changed =
+          CheckForChanges.checkStreamsForChanges(
+              server,
+              accurevEnv,
+              jenkinsWorkspace,
+              listener,
+              launcher,
+              hierarchy,
+              buildDate,
+              logger,
+              scm);
+      if (changed != null) {
+        return changed ? PollingResult.BUILD_NOW : PollingResult.NO_CHANGES;
       }
+    }
+    final List<Callable<Boolean>> checks = new ArrayList<>();
+    for (final AccurevStream s : hierarchy) {
+      // Each command gets its own environment as running a command modifies it
+      final EnvVars env = new EnvVars(accurevEnv);
+      checks.add(
+          () ->
+              CheckForChanges.checkStreamForChanges(
+                  server,
+                  env,
+                  jenkinsWorkspace,
+                  listener,
+                  launcher,
+                  s,
+                  buildDate,
+                  logger,
+                  scm,
+                  version));
+    }
+    return anyChanges(checks);
+  }
+
+  /** The stream, followed by the ancestors it gets changes from. */
+  private List<AccurevStream> getHierarchy(AccurevStream stream) {
+    final List<AccurevStream> hierarchy = new ArrayList<>();
+    do {
+      hierarchy.add(stream);
       stream = stream.getParent();
     } while (stream != null
         && stream.isReceivingChangesFromParent()
         && !scm.isIgnoreStreamParent());
-    return PollingResult.NO_CHANGES;
+    return hierarchy;
+  }
+
+  /** Whether the last build recorded a transaction for every stream changes come from. */
+  private boolean isCoveredBy(AccurevRevisionState state, List<AccurevStream> hierarchy) {
+    for (AccurevStream stream : hierarchy) {
+      if (!state.hasTransaction(stream.getName())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private PollingResult checkForChangesSince(
+      AccurevRevisionState state, List<AccurevStream> hierarchy)
+      throws IOException, InterruptedException {
+    // There may be changes in a parent stream that we need to factor in.
+    if (hierarchy.size() > 1 && isCombinedHistory()) {
+      final Boolean changed =
+          CheckForChanges.checkStreamsForChanges(
+              server,
+              accurevEnv,
+              jenkinsWorkspace,
+              listener,
+              launcher,
+              hierarchy,
+              state,
+              logger,
+              scm);
+      if (changed != null) {
+        return changed ? PollingResult.BUILD_NOW : PollingResult.NO_CHANGES;
+      }
+    }
+    final List<Callable<Boolean>> checks = new ArrayList<>();
+    for (final AccurevStream s : hierarchy) {
+      final long sinceTransaction = state.getTransaction(s.getName());
+      final EnvVars env = new EnvVars(accurevEnv);
+      checks.add(
+          () ->
+              CheckForChanges.checkStreamForChanges(
+                  server,
+                  env,
+                  jenkinsWorkspace,
+                  listener,
+                  launcher,
+                  s,
+                  sinceTransaction,
+                  logger,
+                  scm));
+    }
+    return anyChanges(checks);
+  }
+
+  /** Whether the client can read the history of several transaction types at once. */
+  private boolean isCombinedHistory() throws IOException {
+    final AccurevCapabilities capabilities =
+        ClientVersion.getCapabilities(scm, launcher, accurevEnv, jenkinsWorkspace, listener);
+    return capabilities != null && capabilities.isCombinedHistory();
+  }
+
+  /**
+   * Checks the stream and its ancestors side by side, as most polls find no changes and would
+   * otherwise wait on each level in turn. The first change found ends the other checks.
+   */
+  private PollingResult anyChanges(List<Callable<Boolean>> checks)
+      throws IOException, InterruptedException {
+    return ParallelUtils.anyMatch(checks) ? PollingResult.BUILD_NOW : PollingResult.NO_CHANGES;
   }
 }
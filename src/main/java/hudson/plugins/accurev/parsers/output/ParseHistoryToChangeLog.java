@@ -0,0 +1,84 @@
+package hudson.plugins.accurev.parsers.output;
+
+import hudson.plugins.accurev.AccurevLauncher.ICmdOutputParser;
+import hudson.plugins.accurev.AccurevLauncher.UnhandledAccurevCommandOutput;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Copies the output of <code>accurev hist -fx</code> to a changelog file, adding the depot and the
+ * web UI URL before the first transaction as the copy is made.
+ */
+public final class ParseHistoryToChangeLog implements ICmdOutputParser<Boolean, File> {
+
+  private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newFactory();
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+  private static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newFactory();
+
+  static {
+    INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+  }
+
+  private final String depot;
+  private final String webuiURL;
+
+  /**
+   * @param depot depot name
+   * @param webuiURL web UI URL of the server, without trailing slash
+   */
+  public ParseHistoryToChangeLog(String depot, String webuiURL) {
+    this.depot = depot;
+    this.webuiURL = webuiURL;
+  }
+
+  public Boolean parse(InputStream cmdOutput, File fileToWriteTo)
+      throws UnhandledAccurevCommandOutput, IOException {
+    final String encoding = StandardCharsets.UTF_8.name();
+    try (OutputStream os = new BufferedOutputStream(new FileOutputStream(fileToWriteTo))) {
+      final XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(cmdOutput);
+      final XMLEventWriter writer = OUTPUT_FACTORY.createXMLEventWriter(os, encoding);
+      boolean injected = false;
+      while (reader.hasNext()) {
+        XMLEvent event = reader.nextEvent();
+        if (event.isStartDocument()) {
+          event =
+              EVENT_FACTORY.createStartDocument(encoding, ((StartDocument) event).getVersion());
+        } else if (!injected
+            && event.isStartElement()
+            && "transaction".equals(event.asStartElement().getName().getLocalPart())) {
+          writeElement(writer, "depot", depot);
+          writeElement(writer, "webuiURL", webuiURL);
+          injected = true;
+        }
+        writer.add(event);
+      }
+      writer.flush();
+      writer.close();
+      reader.close();
+    } catch (XMLStreamException e) {
+      throw new UnhandledAccurevCommandOutput(e);
+    }
+    return Boolean.TRUE;
+  }
+
+  private static void writeElement(XMLEventWriter writer, String name, String text)
+      throws XMLStreamException {
+    writer.add(EVENT_FACTORY.createStartElement("", "", name));
+    writer.add(EVENT_FACTORY.createCharacters(text == null ? "" : text));
+    writer.add(EVENT_FACTORY.createEndElement("", "", name));
+  }
+}
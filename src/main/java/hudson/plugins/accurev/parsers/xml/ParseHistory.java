@@ -25,9 +25,15 @@ public final class ParseHistory implements ICmdOutputXmlParser<Boolean, List<Acc
           resultTransaction.setAction(parser.getAttributeValue("", "type"));
           resultTransaction.setDate(convertAccurevTimestamp(parser.getAttributeValue("", "time")));
           resultTransaction.setUser(parser.getAttributeValue("", "user"));
+          resultTransaction.setStream(parser.getAttributeValue("", "streamName"));
         } else if ("comment".equalsIgnoreCase(parser.getName()) && resultTransaction != null) {
           // parse comments
           resultTransaction.setMsg(parser.nextText());
+        } else if ("stream".equalsIgnoreCase(parser.getName())
+            && resultTransaction != null
+            && resultTransaction.getStream() == null) {
+          // mkstream and chstream describe the stream they changed
+          resultTransaction.setStream(parser.getAttributeValue("", "name"));
         } else if ("version".equalsIgnoreCase(parser.getName()) && resultTransaction != null) {
           // parse path & convert it to standard format
           String path = parser.getAttributeValue("", "path");
@@ -35,6 +41,7 @@ public final class ParseHistory implements ICmdOutputXmlParser<Boolean, List<Acc
             path = AccurevUtils.cleanAccurevPath(path);
           }
           resultTransaction.addAffectedPath(path);
+          setStreamFromVersion(parser, resultTransaction);
         }
       }
     }
@@ -44,6 +51,41 @@ public final class ParseHistory implements ICmdOutputXmlParser<Boolean, List<Acc
 
   public Boolean parseAll(XmlPullParser parser, List<AccurevTransaction> context)
       throws IOException, XmlPullParserException {
+    visit(
+        parser,
+        new Visitor() {
+          @Override
+          public boolean transaction(AccurevTransaction transaction) {
+            return true;
+          }
+
+          @Override
+          public boolean version(AccurevTransaction transaction, String path) {
+            transaction.addAffectedPath(path);
+            return true;
+          }
+
+          @Override
+          public boolean endTransaction(AccurevTransaction transaction) {
+            context.add(transaction);
+            return true;
+          }
+        });
+    return Boolean.valueOf((context != null));
+  }
+
+  /**
+   * Reads the transactions of a history one at a time, handing each to the visitor as it is read
+   * instead of keeping them. Versions are not added to the transaction passed to the visitor.
+   *
+   * @param parser parser over the output of <code>hist -fx</code>
+   * @param visitor visitor
+   * @return <code>true</code> if the visitor stopped the parse before the end of the history
+   * @throws IOException on failing IO
+   * @throws XmlPullParserException if failed to Parse
+   */
+  public Boolean visit(XmlPullParser parser, Visitor visitor)
+      throws IOException, XmlPullParserException {
     AccurevTransaction resultTransaction = null;
     while (parser.next() != XmlPullParser.END_DOCUMENT) {
       if (parser.getEventType() == XmlPullParser.START_TAG) {
@@ -55,23 +97,86 @@ public final class ParseHistory implements ICmdOutputXmlParser<Boolean, List<Acc
           resultTransaction.setDate(
               AccurevUtils.convertAccurevTimestamp(parser.getAttributeValue("", "time")));
           resultTransaction.setUser(parser.getAttributeValue("", "user"));
+          resultTransaction.setStream(parser.getAttributeValue("", "streamName"));
+          if (!visitor.transaction(resultTransaction)) {
+            return true;
+          }
         } else if ("comment".equalsIgnoreCase(parser.getName()) && resultTransaction != null) {
           // parse comments
           resultTransaction.setMsg(parser.nextText());
+        } else if ("stream".equalsIgnoreCase(parser.getName())
+            && resultTransaction != null
+            && resultTransaction.getStream() == null) {
+          // mkstream and chstream describe the stream they changed
+          resultTransaction.setStream(parser.getAttributeValue("", "name"));
         } else if ("version".equalsIgnoreCase(parser.getName()) && resultTransaction != null) {
           // parse path & convert it to standard format
           String path = parser.getAttributeValue("", "path");
           if (path != null) path = AccurevUtils.cleanAccurevPath(path);
-          resultTransaction.addAffectedPath(path);
+          setStreamFromVersion(parser, resultTransaction);
+          if (!visitor.version(resultTransaction, path)) {
+            return true;
+          }
         }
       } else if (parser.getEventType() == XmlPullParser.END_TAG) {
         if ("transaction".equalsIgnoreCase(parser.getName()) && resultTransaction != null) {
           // a transaction parsed
-          context.add(resultTransaction);
+          final AccurevTransaction parsed = resultTransaction;
           resultTransaction = null;
+          if (!visitor.endTransaction(parsed)) {
+            return true;
+          }
         }
       }
     }
-    return Boolean.valueOf((context != null));
+    return false;
+  }
+
+  /**
+   * Older servers do not put the stream name on the transaction, but the virtual version of each
+   * element is named after the stream it was promoted or kept to, e.g. <code>stream/12</code>.
+   */
+  private static void setStreamFromVersion(XmlPullParser parser, AccurevTransaction transaction) {
+    if (transaction.getStream() != null) {
+      return;
+    }
+    String virtual = parser.getAttributeValue("", "virtualNamedVersion");
+    if (virtual != null && virtual.lastIndexOf('/') > 0) {
+      transaction.setStream(virtual.substring(0, virtual.lastIndexOf('/')));
+    }
+  }
+
+  /**
+   * Receives the transactions of a history as they are read. Each method returns <code>false
+   * </code> to stop reading.
+   */
+  public interface Visitor {
+
+    /**
+     * Called once the attributes of a transaction have been read, before its comment and versions.
+     *
+     * @param transaction transaction
+     * @return whether to go on reading
+     */
+    boolean transaction(AccurevTransaction transaction);
+
+    /**
+     * Called for each version of the transaction being read.
+     *
+     * @param transaction transaction
+     * @param path path of the element, or <code>null</code>
+     * @return whether to go on reading
+     */
+    boolean version(AccurevTransaction transaction, String path);
+
+    /**
+     * Called once a transaction has been read in full.
+     *
+     * @param transaction transaction
+     * @return whether to go on reading
+     */
+    default boolean endTransaction(AccurevTransaction transaction) {
+      return true;
+    }
   }
 }
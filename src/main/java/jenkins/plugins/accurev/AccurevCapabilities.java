@@ -0,0 +1,69 @@
+package jenkins.plugins.accurev;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import org.apache.commons.lang.math.NumberUtils;
+
+/**
+ * What an AccuRev client can do, worked out once from its version and kept per node in {@link
+ * AccurevToolCache}.
+ */
+public final class AccurevCapabilities {
+
+  private final String version;
+  private final int major;
+  private final int minor;
+
+  private AccurevCapabilities(String version, int major, int minor) {
+    this.version = version;
+    this.major = major;
+    this.minor = minor;
+  }
+
+  /**
+   * @param version version reported by the client, e.g. <code>7.1.1</code>
+   * @return the capabilities, or <code>null</code> if the version cannot be read
+   */
+  @CheckForNull
+  public static AccurevCapabilities forVersion(String version) {
+    if (version == null) {
+      return null;
+    }
+    final String[] parts = version.trim().split("\\.");
+    final int major = NumberUtils.toInt(parts[0], -1);
+    if (major < 0) {
+      return null;
+    }
+    final int minor = parts.length > 1 ? NumberUtils.toInt(parts[1], 0) : 0;
+    return new AccurevCapabilities(version.trim(), major, minor);
+  }
+
+  /** @return version reported by the client */
+  public String getVersion() {
+    return version;
+  }
+
+  /** @return major version */
+  public int getMajorVersion() {
+    return major;
+  }
+
+  /** @return if <code>hist</code> accepts several transaction types in one <code>-k</code> */
+  public boolean isCombinedHistory() {
+    return major >= 7;
+  }
+
+  /**
+   * Clients before 6.1 set the color of a stream with the <code>style</code> property, later ones
+   * with <code>streamStyle</code>.
+   *
+   * @return name of the property holding the color of a stream
+   */
+  public String getStreamStyleProperty() {
+    return major < 6 || (major == 6 && minor < 1) ? "style" : "streamStyle";
+  }
+
+  @Override
+  public String toString() {
+    return version;
+  }
+}
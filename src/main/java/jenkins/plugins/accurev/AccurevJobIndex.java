@@ -0,0 +1,242 @@
+package jenkins.plugins.accurev;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.Saveable;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.plugins.accurev.AccurevRevisionState;
+import hudson.plugins.accurev.AccurevSCM;
+import hudson.plugins.accurev.AccurevSCM.AccurevServer;
+import hudson.plugins.accurev.AccurevStream;
+import hudson.plugins.accurev.StreamTopologyCache;
+import hudson.scm.SCM;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import jenkins.model.Jenkins;
+import jenkins.triggers.SCMTriggerItem;
+
+/**
+ * Index of the jobs building each stream, kept up to date as jobs are created, saved, moved and
+ * deleted, so that a change to a stream reaches the jobs it affects without going through every
+ * job.
+ *
+ * <p>Jobs are indexed by server, depot and stream. Jobs whose stream is only known once expanded
+ * from a parameter are not indexed. A job is also indexed under the ancestors its last build got
+ * changes from, as recorded in its {@link AccurevRevisionState}, so that it is found even when the
+ * topology of the depot is not cached.
+ */
+public final class AccurevJobIndex {
+
+  /** Server, depot and stream to the full names of the jobs building it. */
+  private static final Map<String, Set<String>> JOBS_BY_STREAM = new ConcurrentHashMap<>();
+
+  /** Full name of a job to the keys it is indexed under. */
+  private static final Map<String, Set<String>> KEYS_BY_JOB = new ConcurrentHashMap<>();
+
+  private AccurevJobIndex() {}
+
+  /**
+   * Gets the jobs building a stream, or a stream receiving changes from it according to the cached
+   * stream topology of the depot or to the ancestors recorded by their last build.
+   *
+   * @param server server
+   * @param depot depot
+   * @param stream stream that changed
+   * @return the jobs, some of which may ignore changes in parent streams
+   */
+  public static Set<Job<?, ?>> getJobs(AccurevServer server, String depot, String stream) {
+    final Set<Job<?, ?>> jobs = new LinkedHashSet<>();
+    final Map<String, AccurevStream> streams = StreamTopologyCache.getCachedStreams(server, depot);
+    final AccurevStream changed = streams == null ? null : streams.get(stream);
+    if (changed == null) {
+      addJobs(jobs, key(server.getUuid(), depot, stream));
+      return jobs;
+    }
+    final Set<AccurevStream> visited = new HashSet<>();
+    final Deque<AccurevStream> pending = new ArrayDeque<>();
+    pending.add(changed);
+    while (!pending.isEmpty()) {
+      final AccurevStream s = pending.remove();
+      if (!visited.add(s)) {
+        continue;
+      }
+      addJobs(jobs, key(server.getUuid(), depot, s.getName()));
+      for (AccurevStream child : s.getChildren()) {
+        if (child.isReceivingChangesFromParent()) {
+          pending.add(child);
+        }
+      }
+    }
+    return jobs;
+  }
+
+  private static void addJobs(Set<Job<?, ?>> jobs, String key) {
+    final Set<String> names = JOBS_BY_STREAM.get(key);
+    if (names == null) {
+      return;
+    }
+    final Jenkins jenkins = Jenkins.get();
+    for (String name : names) {
+      final Job<?, ?> job = jenkins.getItemByFullName(name, Job.class);
+      if (job != null) {
+        jobs.add(job);
+      }
+    }
+  }
+
+  /**
+   * Indexes a job under the streams it builds, replacing what it was indexed under before.
+   *
+   * @param item job, other items are ignored
+   */
+  static synchronized void index(Item item) {
+    remove(item.getFullName());
+    if (!(item instanceof Job)) {
+      return;
+    }
+    final SCMTriggerItem triggerItem = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(item);
+    if (triggerItem == null) {
+      return;
+    }
+    final Set<String> keys = new HashSet<>();
+    for (SCM scm : triggerItem.getSCMs()) {
+      if (!(scm instanceof AccurevSCM)) {
+        continue;
+      }
+      final AccurevSCM accurevSCM = (AccurevSCM) scm;
+      final AccurevServer server = accurevSCM.getServer();
+      if (server == null || accurevSCM.hasStringVariableReference(accurevSCM.getStream())) {
+        continue;
+      }
+      keys.add(key(server.getUuid(), accurevSCM.getDepot(), accurevSCM.getStream()));
+      for (String ancestor : getRecordedAncestors((Job<?, ?>) item, accurevSCM)) {
+        keys.add(key(server.getUuid(), accurevSCM.getDepot(), ancestor));
+      }
+    }
+    if (keys.isEmpty()) {
+      return;
+    }
+    KEYS_BY_JOB.put(item.getFullName(), keys);
+    for (String key : keys) {
+      JOBS_BY_STREAM
+          .computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet())
+          .add(item.getFullName());
+    }
+  }
+
+  /**
+   * Gets the streams a job got changes from in its last build, besides its own.
+   *
+   * @param job job
+   * @param scm one of the job's SCMs
+   * @return the ancestors of the stream of the SCM, nearest first, or an empty list if the last
+   *     build did not record them
+   */
+  public static List<String> getRecordedAncestors(Job<?, ?> job, AccurevSCM scm) {
+    if (scm.isIgnoreStreamParent()) {
+      return Collections.emptyList();
+    }
+    Run<?, ?> build = job.getLastBuild();
+    if (build != null && build.getAction(AccurevRevisionState.class) == null) {
+      // the last build may still be running, and not have checked out yet
+      build = build.getPreviousBuild();
+    }
+    final AccurevRevisionState state =
+        build == null ? null : build.getAction(AccurevRevisionState.class);
+    // a workspace comes first, followed by the stream it is backed by
+    return state == null ? Collections.emptyList() : state.getAncestors(scm.getStream());
+  }
+
+  static synchronized void remove(String fullName) {
+    final Set<String> keys = KEYS_BY_JOB.remove(fullName);
+    if (keys == null) {
+      return;
+    }
+    for (String key : keys) {
+      JOBS_BY_STREAM.computeIfPresent(
+          key,
+          (k, names) -> {
+            names.remove(fullName);
+            return names.isEmpty() ? null : names;
+          });
+    }
+  }
+
+  /** Indexes every job from scratch. */
+  static synchronized void rebuild() {
+    JOBS_BY_STREAM.clear();
+    KEYS_BY_JOB.clear();
+    try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+      for (Job<?, ?> job : Jenkins.get().allItems(Job.class)) {
+        index(job);
+      }
+    }
+  }
+
+  private static String key(String serverUuid, String depot, String stream) {
+    return serverUuid + '/' + depot + '/' + stream;
+  }
+
+  @Extension
+  public static final class ItemListenerImpl extends ItemListener {
+
+    @Override
+    public void onLoaded() {
+      rebuild();
+    }
+
+    @Override
+    public void onCreated(Item item) {
+      index(item);
+    }
+
+    @Override
+    public void onDeleted(Item item) {
+      remove(item.getFullName());
+    }
+
+    @Override
+    public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+      remove(oldFullName);
+      index(item);
+    }
+  }
+
+  /** Catches configuration changes, whether made from the UI or through the API. */
+  @Extension
+  public static final class SaveableListenerImpl extends SaveableListener {
+
+    @Override
+    public void onChange(Saveable o, XmlFile file) {
+      if (o instanceof Job) {
+        index((Job<?, ?>) o);
+      }
+    }
+  }
+
+  /** Pipelines only know their SCMs once they have checked them out. */
+  @Extension
+  public static final class RunListenerImpl extends RunListener<Run<?, ?>> {
+
+    @Override
+    public void onCompleted(Run<?, ?> run, @NonNull TaskListener listener) {
+      index(run.getParent());
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package jenkins.plugins.accurev;
+
+import hudson.model.Cause;
+import org.apache.commons.lang.StringUtils;
+
+/** A build started because a promote was reported by the AccuRev server. */
+public class AccurevPromoteCause extends Cause {
+
+  private final String stream;
+  private final String transaction;
+
+  /**
+   * @param stream stream promoted to
+   * @param transaction transaction of the promote, may be blank
+   */
+  public AccurevPromoteCause(String stream, String transaction) {
+    this.stream = stream;
+    this.transaction = transaction;
+  }
+
+  public String getStream() {
+    return stream;
+  }
+
+  public String getTransaction() {
+    return transaction;
+  }
+
+  @Override
+  public String getShortDescription() {
+    if (StringUtils.isBlank(transaction)) {
+      return "Started by an AccuRev promote to " + stream;
+    }
+    return "Started by AccuRev promote transaction " + transaction + " to " + stream;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof AccurevPromoteCause)) {
+      return false;
+    }
+    AccurevPromoteCause other = (AccurevPromoteCause) o;
+    return StringUtils.equals(stream, other.stream)
+        && StringUtils.equals(transaction, other.transaction);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * StringUtils.defaultString(stream).hashCode()
+        + StringUtils.defaultString(transaction).hashCode();
+  }
+}
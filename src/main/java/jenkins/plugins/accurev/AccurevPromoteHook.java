@@ -0,0 +1,246 @@
+package jenkins.plugins.accurev;
+
+import hudson.Extension;
+import hudson.model.CauseAction;
+import hudson.model.Job;
+import hudson.model.UnprotectedRootAction;
+import hudson.plugins.accurev.AccurevSCM;
+import hudson.plugins.accurev.AccurevSCM.AccurevServer;
+import hudson.plugins.accurev.AccurevStream;
+import hudson.plugins.accurev.CheckForChanges;
+import hudson.plugins.accurev.StreamTopologyCache;
+import hudson.scm.SCM;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.security.csrf.CrumbExclusion;
+import hudson.triggers.SCMTrigger;
+import hudson.util.Secret;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import jenkins.plugins.accurev.util.AccurevUtils;
+import jenkins.triggers.SCMTriggerItem;
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+/**
+ * Receives promote notifications from an AccuRev server trigger, and schedules the jobs building
+ * the promoted stream or a stream receiving changes from it.
+ *
+ * <p>Only servers with "Enable Post Promote Listener" checked are listened to. A server-side
+ * <code>server_post_promote</code> trigger reports a promote with:
+ *
+ * <pre>
+ * POST JENKINS_URL/accurev/notifyPromote?token=TOKEN&amp;host=HOST&amp;depot=DEPOT
+ *     &amp;stream=STREAM&amp;transaction=ID&amp;path=/./src/a.c&amp;path=...
+ * </pre>
+ *
+ * <code>token</code>, <code>host</code>, <code>transaction</code> and <code>path</code> are
+ * optional. When paths are given, jobs with polling filters are only scheduled if one of them
+ * matches.
+ *
+ * <p>Anyone able to reach Jenkins can post a notification, so jobs are only built straight away
+ * when it carries the post promote token of their server. Otherwise they are only polled, as git's
+ * <code>notifyCommit</code> does, which builds them only if the promote is really there.
+ */
+@Extension
+public class AccurevPromoteHook implements UnprotectedRootAction {
+
+  public static final String URL_NAME = "accurev";
+
+  private static final Logger LOGGER = Logger.getLogger(AccurevPromoteHook.class.getName());
+
+  @Override
+  public String getIconFileName() {
+    return null;
+  }
+
+  @Override
+  public String getDisplayName() {
+    return null;
+  }
+
+  @Override
+  public String getUrlName() {
+    return URL_NAME;
+  }
+
+  @RequirePOST
+  public HttpResponse doNotifyPromote(
+      @QueryParameter String token,
+      @QueryParameter String host,
+      @QueryParameter String depot,
+      @QueryParameter String stream,
+      @QueryParameter String transaction,
+      StaplerRequest req) {
+    if (StringUtils.isBlank(depot) || StringUtils.isBlank(stream)) {
+      return HttpResponses.error(HttpServletResponse.SC_BAD_REQUEST, "depot and stream required");
+    }
+    final String[] pathValues = req.getParameterValues("path");
+    // depot paths, as the history read when polling, are matched without their /./ prefix
+    final List<String> paths =
+        pathValues == null
+            ? Collections.emptyList()
+            : Arrays.stream(pathValues)
+                .map(AccurevUtils::cleanAccurevPath)
+                .collect(Collectors.toList());
+    LOGGER.fine("Promote of transaction " + transaction + " to " + depot + "/" + stream);
+
+    final StringBuilder scheduled = new StringBuilder();
+    try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+      for (AccurevServer server : getListeningServers(host)) {
+        final boolean authenticated = isAuthenticated(server, token);
+        for (Job<?, ?> job : findJobs(server, depot, stream, paths)) {
+          final SCMTriggerItem item = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(job);
+          if (authenticated) {
+            if (item.scheduleBuild2(
+                    item.getQuietPeriod(),
+                    new CauseAction(new AccurevPromoteCause(stream, transaction)))
+                != null) {
+              scheduled.append("Scheduled ").append(job.getFullName()).append('\n');
+            }
+          } else {
+            final SCMTrigger trigger = item.getSCMTrigger();
+            if (trigger != null && !trigger.isIgnorePostCommitHooks()) {
+              trigger.run();
+              scheduled.append("Polling ").append(job.getFullName()).append('\n');
+            }
+          }
+        }
+      }
+    }
+    return HttpResponses.plainText(scheduled.toString());
+  }
+
+  /**
+   * @param host server host the promote was made on, blank for any server
+   * @return the servers listening to promotes made on the host
+   */
+  static List<AccurevServer> getListeningServers(String host) {
+    final List<AccurevServer> servers = new ArrayList<>();
+    for (AccurevServer server : AccurevSCM.configuration().getServers()) {
+      if (server.isUsePromoteListen()
+          && !server.isServerDisabled()
+          && (StringUtils.isBlank(host) || host.equalsIgnoreCase(server.getHost()))) {
+        servers.add(server);
+      }
+    }
+    return servers;
+  }
+
+  /** Compares in constant time, so the token cannot be guessed from how long a refusal takes. */
+  private static boolean isAuthenticated(AccurevServer server, String token) {
+    final Secret expected = server.getPromoteToken();
+    return expected != null
+        && token != null
+        && MessageDigest.isEqual(
+            expected.getPlainText().getBytes(StandardCharsets.UTF_8),
+            token.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Finds the jobs of a server affected by a promote.
+   *
+   * @param server server the promote was made on
+   * @param depot depot
+   * @param stream stream promoted to
+   * @param paths paths promoted, empty if unknown
+   * @return the jobs building the stream or a stream receiving changes from it, whose polling
+   *     filters match the paths
+   */
+  static List<Job<?, ?>> findJobs(
+      AccurevServer server, String depot, String stream, Collection<String> paths) {
+    final List<Job<?, ?>> jobs = new ArrayList<>();
+    for (Job<?, ?> job : AccurevJobIndex.getJobs(server, depot, stream)) {
+      final SCMTriggerItem item = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(job);
+      if (item == null) {
+        continue;
+      }
+      for (SCM scm : item.getSCMs()) {
+        if (scm instanceof AccurevSCM
+            && isAffected(job, (AccurevSCM) scm, server, depot, stream, paths)) {
+          jobs.add(job);
+          break;
+        }
+      }
+    }
+    return jobs;
+  }
+
+  private static boolean isAffected(
+      Job<?, ?> job,
+      AccurevSCM scm,
+      AccurevServer server,
+      String depot,
+      String stream,
+      Collection<String> paths) {
+    final AccurevServer jobServer = scm.getServer();
+    if (jobServer == null
+        || !server.getUuid().equals(jobServer.getUuid())
+        || !depot.equals(scm.getDepot())
+        || !receivesChangesFrom(job, scm, server, stream)) {
+      return false;
+    }
+    return paths.isEmpty() || CheckForChanges.changesMatchFilter(scm, paths);
+  }
+
+  /**
+   * Whether the job's stream is the promoted stream, or inherits from it. Ancestors are taken from
+   * the topology of the depot if it is cached, or else from those recorded by the job's last build.
+   */
+  private static boolean receivesChangesFrom(
+      Job<?, ?> job, AccurevSCM scm, AccurevServer server, String stream) {
+    final String jobStream = scm.getStream();
+    if (stream.equals(jobStream)) {
+      return true;
+    }
+    if (scm.isIgnoreStreamParent() || scm.hasStringVariableReference(jobStream)) {
+      return false;
+    }
+    final Map<String, AccurevStream> streams =
+        StreamTopologyCache.getCachedStreams(server, scm.getDepot());
+    AccurevStream s = streams == null ? null : streams.get(jobStream);
+    if (s == null) {
+      return AccurevJobIndex.getRecordedAncestors(job, scm).contains(stream);
+    }
+    while (s != null && s.isReceivingChangesFromParent()) {
+      s = s.getParent();
+      if (s != null && stream.equals(s.getName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Lets the AccuRev server post promotes without a crumb. */
+  @Extension
+  public static class CrumbExclusionImpl extends CrumbExclusion {
+
+    @Override
+    public boolean process(HttpServletRequest req, HttpServletResponse resp, FilterChain chain)
+        throws IOException, ServletException {
+      final String pathInfo = req.getPathInfo();
+      if (pathInfo != null && pathInfo.startsWith("/" + URL_NAME + "/")) {
+        chain.doFilter(req, resp);
+        return true;
+      }
+      return false;
+    }
+  }
+}
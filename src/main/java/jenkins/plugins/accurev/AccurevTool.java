@@ -103,11 +103,11 @@ public class AccurevTool extends ToolInstallation
 
   public AccurevTool forNode(@NonNull Node node, TaskListener log)
       throws IOException, InterruptedException {
-    return new AccurevTool(getName(), translateFor(node, log), Collections.emptyList());
+    return new AccurevTool(getName(), translateFor(node, log), getProperties().toList());
   }
 
   public AccurevTool forEnvironment(EnvVars environment) {
-    return new AccurevTool(getName(), environment.expand(getHome()), Collections.emptyList());
+    return new AccurevTool(getName(), environment.expand(getHome()), getProperties().toList());
   }
 
   @Override
@@ -139,6 +139,12 @@ public class AccurevTool extends ToolInstallation
       return true;
     }
 
+    @Override
+    public void setInstallations(AccurevTool... installations) {
+      super.setInstallations(installations);
+      AccurevToolCache.invalidateAll();
+    }
+
     public FormValidation doCheckHome(@QueryParameter File value) {
       Jenkins.get().checkPermission(Jenkins.ADMINISTER);
       String path = value.getPath();
@@ -0,0 +1,154 @@
+package jenkins.plugins.accurev;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.slaves.ComputerListener;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import jenkins.model.NodeListener;
+
+/**
+ * Per node cache of the AccuRev executable, so the tool is only resolved for a node and the
+ * executable only probed once, rather than before every command. The {@link AccurevCapabilities}
+ * of the client are kept alongside, so its version is not asked for on every poll.
+ *
+ * <p>Entries are dropped when the tool configuration changes, when the node is updated or removed,
+ * and when its agent comes back online.
+ */
+public final class AccurevToolCache {
+
+  private static final Map<String, NodeEntry> NODES = new ConcurrentHashMap<>();
+
+  private AccurevToolCache() {}
+
+  /**
+   * Gets the home of a tool on a node, as resolved by {@link AccurevTool#forNode}.
+   *
+   * @param node node
+   * @param tool tool as configured globally
+   * @return the resolved home, or <code>null</code> if not cached
+   */
+  @CheckForNull
+  public static String getHome(@NonNull Node node, @NonNull AccurevTool tool) {
+    String[] home = entry(node).homes.get(tool.getName());
+    if (home == null || !home[0].equals(String.valueOf(tool.getHome()))) {
+      return null;
+    }
+    return home[1];
+  }
+
+  /**
+   * Caches the home of a tool on a node.
+   *
+   * @param node node
+   * @param tool tool as configured globally
+   * @param home home resolved for the node
+   */
+  public static void putHome(@NonNull Node node, @NonNull AccurevTool tool, String home) {
+    if (home != null) {
+      entry(node).homes.put(tool.getName(), new String[] {String.valueOf(tool.getHome()), home});
+    }
+  }
+
+  /**
+   * @param node node
+   * @param executable executable path
+   * @return if the executable has already been successfully run on the node
+   */
+  public static boolean isVerified(@NonNull Node node, @NonNull String executable) {
+    return entry(node).verified.contains(executable);
+  }
+
+  /**
+   * Records that an executable could be run on a node.
+   *
+   * @param node node
+   * @param executable executable path
+   */
+  public static void setVerified(@NonNull Node node, @NonNull String executable) {
+    entry(node).verified.add(executable);
+  }
+
+  /**
+   * @param node node
+   * @param tool name of the tool, <code>null</code> for the default one
+   * @return the capabilities of the client, or <code>null</code> if not cached
+   */
+  @CheckForNull
+  public static AccurevCapabilities getCapabilities(@NonNull Node node, String tool) {
+    return entry(node).capabilities.get(Util.fixNull(tool));
+  }
+
+  /**
+   * Caches the capabilities of the client on a node.
+   *
+   * @param node node
+   * @param tool name of the tool, <code>null</code> for the default one
+   * @param capabilities capabilities of the client
+   */
+  public static void putCapabilities(
+      @NonNull Node node, String tool, @NonNull AccurevCapabilities capabilities) {
+    entry(node).capabilities.put(Util.fixNull(tool), capabilities);
+  }
+
+  public static void invalidate(String nodeName) {
+    NODES.remove(nodeName);
+  }
+
+  public static void invalidateAll() {
+    NODES.clear();
+  }
+
+  private static NodeEntry entry(Node node) {
+    // A reconfigured node is a new instance, so an entry for an older instance is stale
+    return NODES.compute(
+        node.getNodeName(),
+        (name, entry) -> entry == null || entry.node != node ? new NodeEntry(node) : entry);
+  }
+
+  private static final class NodeEntry {
+
+    private final Node node;
+    /** Tool name to configured home and home resolved for the node. */
+    private final Map<String, String[]> homes = new ConcurrentHashMap<>();
+
+    private final Set<String> verified = ConcurrentHashMap.newKeySet();
+
+    /** Tool name to capabilities of the client it runs. */
+    private final Map<String, AccurevCapabilities> capabilities = new ConcurrentHashMap<>();
+
+    private NodeEntry(Node node) {
+      this.node = node;
+    }
+  }
+
+  @Extension
+  public static final class NodeListenerImpl extends NodeListener {
+
+    @Override
+    protected void onUpdated(@NonNull Node oldOne, @NonNull Node newOne) {
+      invalidate(oldOne.getNodeName());
+      invalidate(newOne.getNodeName());
+    }
+
+    @Override
+    protected void onDeleted(@NonNull Node node) {
+      invalidate(node.getNodeName());
+    }
+  }
+
+  @Extension
+  public static final class ComputerListenerImpl extends ComputerListener {
+
+    @Override
+    public void onOnline(Computer c, TaskListener listener) {
+      invalidate(c.getName());
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package jenkins.plugins.accurev.util;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import jenkins.util.SystemProperties;
+
+/** Runs independent AccuRev commands, such as one per stream of a hierarchy, side by side. */
+public final class ParallelUtils {
+
+  /** Maximum number of tasks of a single {@link #invokeAll} call running at once. */
+  public static final int PARALLELISM =
+      Math.max(1, SystemProperties.getInteger(ParallelUtils.class.getName() + ".parallelism", 4));
+
+  private static final ExecutorService EXECUTOR =
+      Executors.newCachedThreadPool(
+          new NamingThreadFactory(new DaemonThreadFactory(), "AccuRev parallel"));
+
+  private ParallelUtils() {}
+
+  /**
+   * Runs tasks with at most {@link #PARALLELISM} of them at once, and returns their results in the
+   * order of the tasks. If a task fails, the tasks after it are cancelled and its exception is
+   * thrown, as if the tasks had been run one after the other.
+   *
+   * @param <T> The type of the results.
+   * @param tasks tasks to run
+   * @return the results, in the order of the tasks
+   * @throws IOException if a task failed
+   * @throws InterruptedException if interrupted while waiting, in which case all tasks are
+   *     cancelled
+   */
+  public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks)
+      throws IOException, InterruptedException {
+    if (tasks.size() == 1) {
+      return invokeOne(tasks.get(0));
+    }
+    final Semaphore permits = new Semaphore(PARALLELISM);
+    final List<Future<T>> futures = new ArrayList<>(tasks.size());
+    try {
+      for (final Callable<T> task : tasks) {
+        permits.acquire();
+        futures.add(
+            EXECUTOR.submit(
+                () -> {
+                  try {
+                    return task.call();
+                  } finally {
+                    permits.release();
+                  }
+                }));
+      }
+      final List<T> results = new ArrayList<>(tasks.size());
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    } catch (ExecutionException e) {
+      throw unwrap(e);
+    } finally {
+      for (Future<T> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Runs tasks with at most {@link #PARALLELISM} of them at once, until one of them returns <code>
+   * true</code>. The tasks still running are then cancelled and those not started yet are never
+   * run. A cancelled task running an AccuRev command has the command's process killed, see {@link
+   * hudson.plugins.accurev.AccurevLauncher}.
+   *
+   * @param tasks tasks to run, in the order they should start in
+   * @return whether any of the tasks returned <code>true</code>
+   * @throws IOException if a task failed before any returned <code>true</code>
+   * @throws InterruptedException if interrupted while waiting, in which case all tasks are
+   *     cancelled
+   */
+  public static boolean anyMatch(List<? extends Callable<Boolean>> tasks)
+      throws IOException, InterruptedException {
+    if (tasks.size() == 1) {
+      return Boolean.TRUE.equals(invokeOne(tasks.get(0)).get(0));
+    }
+    final CompletionService<Boolean> completion = new ExecutorCompletionService<>(EXECUTOR);
+    final List<Future<Boolean>> futures = new ArrayList<>(tasks.size());
+    try {
+      int next = 0;
+      while (next < tasks.size() && next < PARALLELISM) {
+        futures.add(completion.submit(tasks.get(next++)));
+      }
+      for (int done = 0; done < tasks.size(); done++) {
+        if (Boolean.TRUE.equals(completion.take().get())) {
+          return true;
+        }
+        if (next < tasks.size()) {
+          futures.add(completion.submit(tasks.get(next++)));
+        }
+      }
+      return false;
+    } catch (ExecutionException e) {
+      throw unwrap(e);
+    } finally {
+      for (Future<Boolean> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private static <T> List<T> invokeOne(Callable<T> task) throws IOException, InterruptedException {
+    final List<T> results = new ArrayList<>(1);
+    try {
+      results.add(task.call());
+    } catch (IOException | InterruptedException | RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(e);
+    }
+    return results;
+  }
+
+  private static IOException unwrap(ExecutionException e) throws InterruptedException {
+    final Throwable cause = e.getCause();
+    if (cause instanceof IOException) {
+      return (IOException) cause;
+    }
+    if (cause instanceof InterruptedException) {
+      throw (InterruptedException) cause;
+    }
+    if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    }
+    return new IOException(cause);
+  }
+}
@@ -40,9 +40,18 @@ f.advanced {
   f.entry(field: "usePromoteListen", title: _("Enable Post Promote Listener"), help: "/plugin/accurev/help/use-promote-listen.html") {
     f.checkbox()
   }
+  f.entry(field: "promoteToken", title: _("Post Promote Token"), help: "/plugin/accurev/help/promote-token.html") {
+    f.password()
+  }
+  f.entry(field: "useBatchPolling", title: _("Poll each depot once for all jobs"), help: "/plugin/accurev/help/use-batch-polling.html") {
+    f.checkbox()
+  }
   f.entry(field: "uuid", title: _("ID")) {
     f.textbox(disabled: true)
   }
+  f.entry() {
+    f.validateButton(method: "refreshWebURL", title: _("Refresh Web UI URL"), with: "uuid")
+  }
   f.entry(field: "serverDisabled", title: "Disable Plugin for this server ", help: "/plugin/accurev/help/server-disable.html") {
     f.checkbox()
   }
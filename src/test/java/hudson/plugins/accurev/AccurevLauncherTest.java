@@ -0,0 +1,130 @@
+package hudson.plugins.accurev;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeFalse;
+
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Functions;
+import hudson.model.TaskListener;
+import hudson.util.ArgumentListBuilder;
+import hudson.util.StreamTaskListener;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.logging.Logger;
+import jenkins.plugins.accurev.AccurevTool;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class AccurevLauncherTest {
+
+  private static final Logger LOGGER = Logger.getLogger(AccurevLauncherTest.class.getName());
+
+  @Rule public JenkinsRule j = new JenkinsRule();
+  @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final TaskListener listener = StreamTaskListener.fromStdout();
+
+  @Before
+  public void setUp() throws Exception {
+    assumeFalse(Functions.isWindows());
+    // stands in for the client, answering every command with an empty response
+    File accurev = tmp.newFile("accurev");
+    Files.write(
+        accurev.toPath(),
+        ("#!/bin/sh\n"
+                + "case \"$*\" in *slow*) echo $$ > \"$0.pid\"; exec sleep 60;; esac\n"
+                + "echo '<AcResponse Command=\"hist\"/>'\n")
+            .getBytes(StandardCharsets.UTF_8));
+    assertThat(accurev.setExecutable(true), is(true));
+    j.jenkins
+        .getDescriptorByType(AccurevTool.DescriptorImpl.class)
+        .setInstallations(
+            new AccurevTool("fake", accurev.getAbsolutePath(), Collections.emptyList()));
+  }
+
+  @Test
+  public void histRunsAsQuery() throws Exception {
+    NodeLock lock = NodeLock.forNode(j.jenkins);
+    long queries = lock.getAcquiredCount(CommandClass.QUERY);
+    long mutating = lock.getAcquiredCount(CommandClass.MUTATING);
+
+    String output =
+        AccurevLauncher.runCommand(
+            "History command",
+            "fake",
+            j.jenkins.createLauncher(listener),
+            new ArgumentListBuilder("hist", "-fx", "-s", "dev"),
+            lock,
+            new EnvVars(),
+            new FilePath(tmp.getRoot()),
+            listener,
+            LOGGER,
+            (stdout, context) -> IOUtils.toString(stdout, StandardCharsets.UTF_8),
+            null);
+
+    assertThat(output, containsString("AcResponse"));
+    assertThat(lock.getAcquiredCount(CommandClass.QUERY), is(queries + 1));
+    assertThat(lock.getAcquiredCount(CommandClass.MUTATING), is(mutating));
+    assertThat(lock.getAvailablePermits(CommandClass.QUERY), is(CommandClass.QUERY.getLimit()));
+  }
+
+  @Test(timeout = 30_000)
+  public void interruptedCommandIsKilledBeforeItsPermitIsReturned() throws Exception {
+    NodeLock lock = NodeLock.forNode(j.jenkins);
+    int permits = lock.getAvailablePermits(CommandClass.QUERY);
+    Thread caller =
+        new Thread(
+            () -> {
+              try {
+                AccurevLauncher.runStreamingCommand(
+                    "History command",
+                    "fake",
+                    j.jenkins.createLauncher(listener),
+                    new ArgumentListBuilder("hist", "-fx", "-s", "slow"),
+                    lock,
+                    new EnvVars(),
+                    new FilePath(tmp.getRoot()),
+                    listener,
+                    LOGGER,
+                    (stdout, context) -> IOUtils.toString(stdout, StandardCharsets.UTF_8),
+                    null);
+              } catch (IOException expected) {
+                // the interruption is reported as a failed command
+              }
+            });
+    caller.start();
+    File pid = new File(tmp.getRoot(), "accurev.pid");
+    while (pid.length() == 0) {
+      Thread.sleep(50);
+    }
+
+    // reading the output of the process cannot be interrupted, so it has to be killed
+    caller.interrupt();
+    caller.join();
+
+    assertThat(lock.getAvailablePermits(CommandClass.QUERY), is(permits));
+    String process = new String(Files.readAllBytes(pid.toPath()), StandardCharsets.UTF_8).trim();
+    boolean alive =
+        ProcessHandle.of(Long.parseLong(process)).map(ProcessHandle::isAlive).orElse(false);
+    assertThat(alive, is(false));
+  }
+
+  @Test
+  public void commandLineRunAgainIsClassifiedByItsVerb() {
+    ArgumentListBuilder cmd = new ArgumentListBuilder("/opt/accurev/bin/accurev", "stat", "-fx");
+
+    assertThat(CommandClass.of(cmd), is(CommandClass.QUERY));
+    assertThat(CommandClass.of(new ArgumentListBuilder("update")), is(CommandClass.MUTATING));
+    assertThat(CommandClass.of(new ArgumentListBuilder("login")), is(CommandClass.AUTH));
+  }
+}
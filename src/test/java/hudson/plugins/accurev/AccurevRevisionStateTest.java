@@ -0,0 +1,32 @@
+package hudson.plugins.accurev;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class AccurevRevisionStateTest {
+
+  @Test
+  public void mergeKeepsEachCheckout() {
+    Map<String, Long> first = new LinkedHashMap<>();
+    first.put("dev", 12L);
+    first.put("main", 10L);
+    Map<String, Long> second = new LinkedHashMap<>();
+    second.put("tools", 7L);
+    second.put("tools_main", 5L);
+
+    AccurevRevisionState state =
+        new AccurevRevisionState(first).merge(new AccurevRevisionState(second));
+
+    assertThat(state.getTransaction("dev"), is(12L));
+    assertThat(state.getTransaction("tools_main"), is(5L));
+    assertThat(state.getAncestors("dev"), contains("main"));
+    assertThat(state.getAncestors("tools"), contains("tools_main"));
+    assertThat(state.getAncestors("other"), is(empty()));
+  }
+}
@@ -0,0 +1,81 @@
+package hudson.plugins.accurev;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+import org.junit.Test;
+
+public class PathMatcherTest {
+
+  @Test
+  public void testLiteral() {
+    PathMatcher matcher = PathMatcher.compile(Collections.singletonList("src/Main.java"));
+    assertTrue(matcher.matches("src/main.java"));
+    assertFalse(matcher.matches("src/main.java2"));
+    assertFalse(matcher.matches("x/src/main.java"));
+  }
+
+  @Test
+  public void testPrefixSuffixAndContains() {
+    PathMatcher matcher = PathMatcher.compile(Arrays.asList("lib/*", "*.JAVA", "*/dal-mongo/*"));
+    assertTrue(matcher.matches("lib/a/b.txt"));
+    assertTrue(matcher.matches("src/Some.java"));
+    assertTrue(matcher.matches("/home/joseph/dal-mongo/file.txt"));
+    assertFalse(matcher.matches("src/lib/b.txt"));
+    assertFalse(matcher.matches("src/Some.javax"));
+  }
+
+  @Test
+  public void testGlobs() {
+    PathMatcher matcher = PathMatcher.compile(Arrays.asList("*/joseph/*/hi-lib-dal-mongo*", "a?c"));
+    assertTrue(matcher.matches("/home/joseph/test/hi-lib-dal-mongo/test/somefile.java"));
+    assertTrue(matcher.matches("ABC"));
+    assertFalse(matcher.matches("abbc"));
+    assertFalse(matcher.matches("/home/bob/test/hi-lib-dal-mongo/x"));
+  }
+
+  @Test
+  public void testBackslashesAreSlashes() {
+    PathMatcher matcher = PathMatcher.compileFilterList(" \\src\\main\\ , docs/* ");
+    assertTrue(matcher.matches("src/main"));
+    assertTrue(matcher.matches("docs\\readme.txt"));
+    assertFalse(matcher.matches("src/main/a.c"));
+  }
+
+  @Test
+  public void testContainsList() {
+    PathMatcher matcher = PathMatcher.compileContainsList("src\\foo, /docs/");
+    assertTrue(matcher.matches("/./module/src/foo/a.c"));
+    assertTrue(matcher.matches("module\\Docs\\readme.txt"));
+    assertFalse(matcher.matches("src/bar/foo.c"));
+    assertTrue(PathMatcher.compileContainsList(null).isEmpty());
+  }
+
+  @Test
+  public void testEmpty() {
+    assertTrue(PathMatcher.compile(null).isEmpty());
+    assertTrue(PathMatcher.compileFilterList(" ").isEmpty());
+    assertFalse(PathMatcher.compile(null).matches("a"));
+    assertTrue(PathMatcher.compile(Collections.singletonList("*")).matches(""));
+  }
+
+  @Test
+  public void testSameAsWildcardMatch() {
+    String[] patterns = {"*", "**", "a*", "*a", "*a*", "a*b", "?b*", "*a?", "a", "*b*c*", "ab*"};
+    String[] paths = {"", "a", "b", "ab", "ba", "abc", "bca", "aXb", "cab", "bbc", "ABBC"};
+    for (String pattern : patterns) {
+      PathMatcher matcher = PathMatcher.compile(Collections.singletonList(pattern));
+      for (String path : paths) {
+        assertEquals(
+            pattern + " on '" + path + "'",
+            FilenameUtils.wildcardMatch(path, pattern, IOCase.INSENSITIVE),
+            matcher.matches(path));
+      }
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package hudson.plugins.accurev;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import hudson.plugins.accurev.AccurevStream.StreamType;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class StreamTopologyCacheTest {
+
+  @After
+  public void tearDown() {
+    StreamTopologyCache.invalidateAll();
+  }
+
+  @Test
+  public void changesToStreamsHandedOutAreNotShared() throws Exception {
+    StreamTopologyCache.getStreams(null, "depot", "dev", StreamTopologyCacheTest::streams);
+
+    Map<String, AccurevStream> first = StreamTopologyCache.getCachedStreams(null, "depot");
+    first.get("dev").setParent(null);
+    Map<String, AccurevStream> second = StreamTopologyCache.getCachedStreams(null, "depot");
+
+    assertThat(second.get("dev").getParent(), sameInstance(second.get("main")));
+    assertThat(first.get("dev").getParent(), is(nullValue()));
+  }
+
+  @Test(timeout = 10_000)
+  public void concurrentMissesLoadOnce() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Map<String, AccurevStream>> loader =
+          executor.submit(
+              () ->
+                  StreamTopologyCache.getStreams(
+                      null,
+                      "depot",
+                      "dev",
+                      () -> {
+                        loads.incrementAndGet();
+                        loading.countDown();
+                        release.await();
+                        return streams();
+                      }));
+      loading.await();
+      Future<Map<String, AccurevStream>> waiter =
+          executor.submit(
+              () ->
+                  StreamTopologyCache.getStreams(
+                      null,
+                      "depot",
+                      "dev",
+                      () -> {
+                        loads.incrementAndGet();
+                        return streams();
+                      }));
+      release.countDown();
+
+      assertThat(loader.get().get("dev").getName(), is("dev"));
+      assertThat(waiter.get().get("dev").getName(), is("dev"));
+      assertThat(loads.get(), is(1));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static Map<String, AccurevStream> streams() {
+    AccurevStream main =
+        new AccurevStream("main", 1L, "depot", null, null, true, StreamType.NORMAL, null, null);
+    AccurevStream dev =
+        new AccurevStream("dev", 2L, "depot", "main", 1L, true, StreamType.NORMAL, null, null);
+    dev.setParent(main);
+    Map<String, AccurevStream> streams = new HashMap<>();
+    streams.put("main", main);
+    streams.put("dev", dev);
+    return streams;
+  }
+}
@@ -0,0 +1,38 @@
+package hudson.plugins.accurev.cmd;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import hudson.plugins.accurev.AccurevSCM.AccurevServer;
+import org.junit.After;
+import org.junit.Test;
+
+public class LoginSessionsTest {
+
+  private final AccurevServer server = new AccurevServer(null, "accurevServer", "accurevbox");
+
+  @After
+  public void tearDown() {
+    LoginSessions.invalidate(null, server);
+  }
+
+  @Test
+  public void expiredSessionIsForgotten() {
+    LoginSessions.loggedIn(null, server, "builder");
+
+    LoginSessions.invalidateOnAuthError(
+        null, Command.getServerAddress(server), "Session token expired, please log in again");
+
+    assertThat(LoginSessions.isLoggedIn(null, server, "builder"), is(false));
+  }
+
+  @Test
+  public void otherExpiriesKeepTheSession() {
+    LoginSessions.loggedIn(null, server, "builder");
+
+    LoginSessions.invalidateOnAuthError(
+        null, Command.getServerAddress(server), "Element is locked, lock expired on 2020/01/01");
+
+    assertThat(LoginSessions.isLoggedIn(null, server, "builder"), is(true));
+  }
+}
@@ -0,0 +1,106 @@
+package hudson.plugins.accurev.parsers.xml;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import hudson.plugins.accurev.AccurevTransaction;
+import hudson.plugins.accurev.XmlParserFactory;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.xmlpull.v1.XmlPullParser;
+
+public class ParseHistoryTest {
+
+  // transactions look their user up
+  @Rule public JenkinsRule rule = new JenkinsRule();
+
+  private static final String HISTORY =
+      "<AcResponse Command=\"hist\">"
+          + "<transaction id=\"12\" type=\"promote\" time=\"1500000012\" user=\"bob\">"
+          + "<comment>second</comment>"
+          + "<version path=\"/./src/b.c\" virtualNamedVersion=\"dev/2\"/>"
+          + "<version path=\"/./docs/b.txt\" virtualNamedVersion=\"dev/2\"/>"
+          + "</transaction>"
+          + "<transaction id=\"11\" type=\"promote\" time=\"1500000011\" user=\"bob\">"
+          + "<comment>first</comment>"
+          + "<version path=\"/./src/a.c\" virtualNamedVersion=\"dev/1\"/>"
+          + "</transaction>"
+          + "</AcResponse>";
+
+  @Test
+  public void parseAllCollectsTransactions() throws Exception {
+    List<AccurevTransaction> transactions = new ArrayList<>();
+    new ParseHistory().parseAll(parser(), transactions);
+
+    assertThat(transactions.size(), is(2));
+    assertThat(transactions.get(0).getMsg(), is("second"));
+    assertThat(transactions.get(0).getStream(), is("dev"));
+    assertThat(transactions.get(0).getAffectedPaths(), contains("src/b.c", "docs/b.txt"));
+    assertThat(transactions.get(1).getAffectedPaths(), contains("src/a.c"));
+  }
+
+  @Test
+  public void visitorStopsParsing() throws Exception {
+    List<String> seen = new ArrayList<>();
+    Boolean stopped =
+        new ParseHistory()
+            .visit(
+                parser(),
+                new ParseHistory.Visitor() {
+                  @Override
+                  public boolean transaction(AccurevTransaction transaction) {
+                    seen.add(transaction.getId());
+                    return true;
+                  }
+
+                  @Override
+                  public boolean version(AccurevTransaction transaction, String path) {
+                    seen.add(path);
+                    return !path.startsWith("src/");
+                  }
+                });
+
+    assertThat(stopped, is(true));
+    assertThat(seen, contains("12", "src/b.c"));
+  }
+
+  @Test
+  public void visitorReadsToTheEnd() throws Exception {
+    List<String> seen = new ArrayList<>();
+    Boolean stopped =
+        new ParseHistory()
+            .visit(
+                parser(),
+                new ParseHistory.Visitor() {
+                  @Override
+                  public boolean transaction(AccurevTransaction transaction) {
+                    return true;
+                  }
+
+                  @Override
+                  public boolean version(AccurevTransaction transaction, String path) {
+                    return true;
+                  }
+
+                  @Override
+                  public boolean endTransaction(AccurevTransaction transaction) {
+                    seen.add(transaction.getId());
+                    return true;
+                  }
+                });
+
+    assertThat(stopped, is(false));
+    assertThat(seen, contains("12", "11"));
+  }
+
+  private static XmlPullParser parser() throws Exception {
+    XmlPullParser parser = XmlParserFactory.getFactory().newPullParser();
+    parser.setInput(new StringReader(HISTORY));
+    return parser;
+  }
+}
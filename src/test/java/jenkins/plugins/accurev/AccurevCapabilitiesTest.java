@@ -0,0 +1,34 @@
+package jenkins.plugins.accurev;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class AccurevCapabilitiesTest {
+
+  @Test
+  public void readsVersion() {
+    AccurevCapabilities capabilities = AccurevCapabilities.forVersion("7.1.1");
+
+    assertThat(capabilities.getVersion(), is("7.1.1"));
+    assertThat(capabilities.getMajorVersion(), is(7));
+    assertThat(capabilities.isCombinedHistory(), is(true));
+    assertThat(capabilities.getStreamStyleProperty(), is("streamStyle"));
+  }
+
+  @Test
+  public void olderClients() {
+    assertThat(AccurevCapabilities.forVersion("6.2").isCombinedHistory(), is(false));
+    assertThat(AccurevCapabilities.forVersion("6.1.0").getStreamStyleProperty(), is("streamStyle"));
+    assertThat(AccurevCapabilities.forVersion("6.0.2").getStreamStyleProperty(), is("style"));
+    assertThat(AccurevCapabilities.forVersion("5.7").getStreamStyleProperty(), is("style"));
+  }
+
+  @Test
+  public void unreadableVersion() {
+    assertThat(AccurevCapabilities.forVersion(null), is(nullValue()));
+    assertThat(AccurevCapabilities.forVersion("unknown"), is(nullValue()));
+  }
+}
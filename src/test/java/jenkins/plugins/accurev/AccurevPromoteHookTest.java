@@ -0,0 +1,164 @@
+package jenkins.plugins.accurev;
+
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import com.gargoylesoftware.htmlunit.HttpMethod;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.plugins.accurev.AccurevRevisionState;
+import hudson.plugins.accurev.AccurevSCM;
+import hudson.plugins.accurev.AccurevSCM.AccurevSCMDescriptor;
+import hudson.plugins.accurev.AccurevSCM.AccurevServer;
+import hudson.plugins.accurev.AccurevStream;
+import hudson.plugins.accurev.AccurevStream.StreamType;
+import hudson.plugins.accurev.StreamTopologyCache;
+import hudson.scm.NullSCM;
+import hudson.util.Secret;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class AccurevPromoteHookTest {
+
+  private static final String TOKEN = "promote-secret";
+
+  @Rule public JenkinsRule rule = new JenkinsRule();
+
+  private AccurevServer server;
+  private FreeStyleProject project;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new AccurevServer(null, "accurevServer", "accurevbox.example.org");
+    server.setUsePromoteListen(true);
+    server.setPromoteToken(Secret.fromString(TOKEN));
+    rule.get(AccurevSCMDescriptor.class).setServers(Collections.singletonList(server));
+    project = rule.createFreeStyleProject("accurevPromote");
+    project.setScm(new AccurevSCM(null, server.getUuid(), "depot", "dev", "none"));
+    // keep scheduled builds in the queue
+    project.setQuietPeriod(600);
+  }
+
+  @After
+  public void tearDown() {
+    StreamTopologyCache.invalidateAll();
+  }
+
+  @Test
+  public void promoteToStreamSchedulesJob() throws Exception {
+    notifyPromote("depot=depot&stream=dev&transaction=42");
+    assertThat(rule.jenkins.getQueue().getItem(project), notNullValue());
+  }
+
+  @Test
+  public void promoteToParentStreamSchedulesJob() throws Exception {
+    AccurevStream parent =
+        new AccurevStream("main", 1L, "depot", null, null, true, StreamType.NORMAL, null, null);
+    AccurevStream child =
+        new AccurevStream("dev", 2L, "depot", "main", 1L, true, StreamType.NORMAL, null, null);
+    child.setParent(parent);
+    Map<String, AccurevStream> streams = new HashMap<>();
+    streams.put("main", parent);
+    streams.put("dev", child);
+    StreamTopologyCache.getStreams(server, "depot", "dev", () -> streams);
+
+    notifyPromote("depot=depot&stream=main");
+    assertThat(rule.jenkins.getQueue().getItem(project), notNullValue());
+  }
+
+  @Test
+  public void promoteToParentRecordedByLastBuildSchedulesJob() throws Exception {
+    AccurevSCM scm = (AccurevSCM) project.getScm();
+    project.setScm(new NullSCM());
+    FreeStyleBuild build = rule.buildAndAssertSuccess(project);
+    Map<String, Long> transactions = new LinkedHashMap<>();
+    transactions.put("dev", 12L);
+    transactions.put("main", 10L);
+    build.addAction(new AccurevRevisionState(transactions));
+    build.save();
+    project.setScm(scm);
+    project.save();
+
+    // the topology of the depot is not cached
+    notifyPromote("depot=depot&stream=main");
+    assertThat(rule.jenkins.getQueue().getItem(project), notNullValue());
+  }
+
+  @Test
+  public void promoteWithoutTokenIsNotBuilt() throws Exception {
+    post("depot=depot&stream=dev");
+    assertThat(rule.jenkins.getQueue().getItem(project), nullValue());
+  }
+
+  @Test
+  public void promoteWithWrongTokenIsNotBuilt() throws Exception {
+    post("token=guess&depot=depot&stream=dev");
+    assertThat(rule.jenkins.getQueue().getItem(project), nullValue());
+  }
+
+  @Test
+  public void promoteToOtherStreamIsIgnored() throws Exception {
+    notifyPromote("depot=depot&stream=other");
+    assertThat(rule.jenkins.getQueue().getItem(project), nullValue());
+  }
+
+  @Test
+  public void promoteOnServerNotListeningIsIgnored() throws Exception {
+    server.setUsePromoteListen(false);
+    notifyPromote("depot=depot&stream=dev");
+    assertThat(rule.jenkins.getQueue().getItem(project), nullValue());
+  }
+
+  @Test
+  public void promoteOutsidePollingFilterIsIgnored() throws Exception {
+    ((AccurevSCM) project.getScm()).setFilterForPollSCM("*/src/main/*");
+    notifyPromote("depot=depot&stream=dev&path=/./docs/readme.txt");
+    assertThat(rule.jenkins.getQueue().getItem(project), nullValue());
+
+    notifyPromote("depot=depot&stream=dev&path=/./docs/readme.txt&path=/./src/main/a.c");
+    assertThat(rule.jenkins.getQueue().getItem(project), notNullValue());
+  }
+
+  @Test
+  public void promotedDepotPathMatchesPollingFilter() throws Exception {
+    ((AccurevSCM) project.getScm()).setFilterForPollSCM("src/*");
+    notifyPromote("depot=depot&stream=dev&path=/./src/a.c");
+    assertThat(rule.jenkins.getQueue().getItem(project), notNullValue());
+  }
+
+  @Test
+  public void promoteFollowsRenamedJob() throws Exception {
+    project.renameTo("accurevPromoteRenamed");
+    notifyPromote("depot=depot&stream=dev");
+    assertThat(rule.jenkins.getQueue().getItem(project), notNullValue());
+  }
+
+  @Test
+  public void promoteFollowsReconfiguredJob() throws Exception {
+    project.setScm(new AccurevSCM(null, server.getUuid(), "depot", "other", "none"));
+    notifyPromote("depot=depot&stream=dev");
+    assertThat(rule.jenkins.getQueue().getItem(project), nullValue());
+
+    notifyPromote("depot=depot&stream=other");
+    assertThat(rule.jenkins.getQueue().getItem(project), notNullValue());
+  }
+
+  private void notifyPromote(String query) throws Exception {
+    post("token=" + TOKEN + "&" + query);
+  }
+
+  private void post(String query) throws Exception {
+    URL url = new URL(rule.getURL(), AccurevPromoteHook.URL_NAME + "/notifyPromote?" + query);
+    rule.createWebClient().getPage(new WebRequest(url, HttpMethod.POST));
+  }
+}